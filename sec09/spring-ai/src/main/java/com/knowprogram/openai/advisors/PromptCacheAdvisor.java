@@ -0,0 +1,130 @@
+package com.knowprogram.openai.advisors;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.knowprogram.openai.cache.MappedResponseStore;
+import com.knowprogram.openai.cache.PromptFingerprint;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.client.ChatClientAttributes;
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.metadata.ChatGenerationMetadata;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.core.Ordered;
+
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Exact-match response cache for deterministic endpoints. It is opt-in per request:
+ * <pre>
+ * .advisors(a -> a.param(PromptCacheAdvisor.ENABLED, true))
+ * </pre>
+ * The key is a SHA-256 over every prompt message (templates are already rendered at this point,
+ * so template params are part of the user text), the chat options and the requested output format.
+ */
+public class PromptCacheAdvisor implements CallAdvisor {
+    private static final Logger logger = LoggerFactory.getLogger(PromptCacheAdvisor.class);
+
+    public static final String ENABLED = "prompt_cache_enabled";
+
+    private final MappedResponseStore store;
+    private final ObjectMapper objectMapper;
+    private final Counter hits;
+    private final Counter misses;
+
+    public PromptCacheAdvisor(MappedResponseStore store, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.store = store;
+        this.objectMapper = objectMapper;
+        this.hits = Counter.builder("chat.prompt.cache.requests").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("chat.prompt.cache.requests").tag("result", "miss").register(meterRegistry);
+        meterRegistry.gauge("chat.prompt.cache.size", store, MappedResponseStore::size);
+    }
+
+    @Override
+    public ChatClientResponse adviseCall(ChatClientRequest chatClientRequest, CallAdvisorChain callAdvisorChain) {
+        if (!Boolean.TRUE.equals(chatClientRequest.context().get(ENABLED))) {
+            return callAdvisorChain.nextCall(chatClientRequest);
+        }
+        byte[] key = key(chatClientRequest);
+        ChatResponse cached = read(store.get(key));
+        if (cached != null) {
+            hits.increment();
+            return ChatClientResponse.builder().chatResponse(cached).context(chatClientRequest.context()).build();
+        }
+        misses.increment();
+        ChatClientResponse clientResponse = callAdvisorChain.nextCall(chatClientRequest);
+        ChatResponse chatResponse = clientResponse.chatResponse();
+        if (chatResponse != null && chatResponse.getResult() != null && !chatResponse.hasToolCalls()) {
+            write(key, chatResponse);
+        }
+        return clientResponse;
+    }
+
+    private byte[] key(ChatClientRequest chatClientRequest) {
+        Prompt prompt = chatClientRequest.prompt();
+        List<String> parts = new ArrayList<>();
+        for (Message message : prompt.getInstructions()) {
+            parts.add(message.getMessageType().name());
+            parts.add(String.valueOf(message.getText()));
+        }
+        parts.add(PromptFingerprint.options(prompt.getOptions()));
+        parts.add(String.valueOf(chatClientRequest.context().get(ChatClientAttributes.OUTPUT_FORMAT.getKey())));
+        return HexFormat.of().parseHex(PromptFingerprint.sha256(parts.toArray(String[]::new)));
+    }
+
+    private ChatResponse read(byte[] payload) {
+        if (payload == null) {
+            return null;
+        }
+        try {
+            CachedResponse cached = objectMapper.readValue(payload, CachedResponse.class);
+            List<Generation> generations = cached.generations().stream()
+                    .map(g -> new Generation(new AssistantMessage(g.text()),
+                            ChatGenerationMetadata.builder().finishReason(g.finishReason()).build()))
+                    .toList();
+            return new ChatResponse(generations, ChatResponseMetadata.builder().model(cached.model()).build());
+        } catch (Exception e) {
+            logger.warn("Discarding unreadable prompt cache entry", e);
+            return null;
+        }
+    }
+
+    private void write(byte[] key, ChatResponse chatResponse) {
+        List<CachedGeneration> generations = chatResponse.getResults().stream()
+                .map(g -> new CachedGeneration(g.getOutput().getText(), g.getMetadata().getFinishReason()))
+                .toList();
+        try {
+            store.put(key, objectMapper.writeValueAsBytes(new CachedResponse(chatResponse.getMetadata().getModel(), generations)));
+        } catch (JsonProcessingException e) {
+            logger.warn("Unable to serialize chat response for the prompt cache", e);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "PromptCacheAdvisor";
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE + 50;
+    }
+
+    record CachedResponse(String model, List<CachedGeneration> generations) {
+    }
+
+    record CachedGeneration(String text, String finishReason) {
+    }
+}
@@ -0,0 +1,147 @@
+package com.knowprogram.openai.advisors;
+
+import com.knowprogram.openai.cache.PromptFingerprint;
+import com.knowprogram.openai.cache.SemanticResponseCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.client.ChatClientMessageAggregator;
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisor;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisorChain;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.core.Ordered;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+
+/**
+ * Answers near-duplicate prompts from a {@link SemanticResponseCache} instead of calling the model.
+ * Lookups are scoped by the system prompt and chat options, so the same question asked of a
+ * different persona or model never shares an answer.
+ * <p>
+ * A near-duplicate of a personal prompt, such as one rendered from a template over customer data,
+ * must not get its answer, so such requests turn the cache off:
+ * <pre>
+ * .advisors(a -> a.param(SemanticCacheAdvisor.ENABLED, false))
+ * </pre>
+ */
+public class SemanticCacheAdvisor implements CallAdvisor, StreamAdvisor {
+    private static final Logger logger = LoggerFactory.getLogger(SemanticCacheAdvisor.class);
+
+    public static final String ENABLED = "semantic_cache_enabled";
+
+    private final EmbeddingModel embeddingModel;
+    private final SemanticResponseCache cache;
+    private final double similarityThreshold;
+    private final Counter hits;
+    private final Counter misses;
+    private final Timer latencySaved;
+
+    public SemanticCacheAdvisor(EmbeddingModel embeddingModel, SemanticResponseCache cache,
+                                double similarityThreshold, MeterRegistry meterRegistry) {
+        this.embeddingModel = embeddingModel;
+        this.cache = cache;
+        this.similarityThreshold = similarityThreshold;
+        this.hits = Counter.builder("chat.semantic.cache.requests").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("chat.semantic.cache.requests").tag("result", "miss").register(meterRegistry);
+        this.latencySaved = Timer.builder("chat.semantic.cache.latency.saved").register(meterRegistry);
+        Gauge.builder("chat.semantic.cache.size", cache, SemanticResponseCache::size).register(meterRegistry);
+    }
+
+    @Override
+    public ChatClientResponse adviseCall(ChatClientRequest chatClientRequest, CallAdvisorChain callAdvisorChain) {
+        String userText = userText(chatClientRequest);
+        if (userText == null) {
+            return callAdvisorChain.nextCall(chatClientRequest);
+        }
+        String scope = scope(chatClientRequest.prompt());
+        float[] embedding = embeddingModel.embed(userText);
+        SemanticResponseCache.Hit hit = lookup(scope, embedding);
+        if (hit != null) {
+            return ChatClientResponse.builder().chatResponse(hit.response()).context(chatClientRequest.context()).build();
+        }
+        long start = System.nanoTime();
+        ChatClientResponse clientResponse = callAdvisorChain.nextCall(chatClientRequest);
+        store(scope, embedding, clientResponse.chatResponse(), start);
+        return clientResponse;
+    }
+
+    @Override
+    public Flux<ChatClientResponse> adviseStream(ChatClientRequest chatClientRequest, StreamAdvisorChain streamAdvisorChain) {
+        String userText = userText(chatClientRequest);
+        if (userText == null) {
+            return streamAdvisorChain.nextStream(chatClientRequest);
+        }
+        String scope = scope(chatClientRequest.prompt());
+        return Mono.fromCallable(() -> embeddingModel.embed(userText))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(embedding -> {
+                    SemanticResponseCache.Hit hit = lookup(scope, embedding);
+                    if (hit != null) {
+                        return Flux.just(ChatClientResponse.builder().chatResponse(hit.response())
+                                .context(chatClientRequest.context()).build());
+                    }
+                    long start = System.nanoTime();
+                    return new ChatClientMessageAggregator().aggregateChatClientResponse(
+                            streamAdvisorChain.nextStream(chatClientRequest),
+                            aggregated -> store(scope, embedding, aggregated.chatResponse(), start));
+                });
+    }
+
+    private SemanticResponseCache.Hit lookup(String scope, float[] embedding) {
+        SemanticResponseCache.Hit hit = cache.lookup(scope, embedding, similarityThreshold);
+        if (hit == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        latencySaved.record(Duration.ofMillis(hit.latencyMillis()));
+        logger.debug("Semantic cache hit with similarity {}", hit.score());
+        return hit;
+    }
+
+    private void store(String scope, float[] embedding, ChatResponse chatResponse, long startNanos) {
+        if (chatResponse == null || chatResponse.getResult() == null || chatResponse.hasToolCalls()) {
+            return;
+        }
+        cache.put(scope, embedding, chatResponse, Duration.ofNanos(System.nanoTime() - startNanos).toMillis());
+    }
+
+    /**
+     * The text to look the request up by, or {@code null} if it must not be cached.
+     */
+    private static String userText(ChatClientRequest chatClientRequest) {
+        if (Boolean.FALSE.equals(chatClientRequest.context().get(ENABLED))) {
+            return null;
+        }
+        UserMessage userMessage = chatClientRequest.prompt().getUserMessage();
+        return userMessage == null || userMessage.getText() == null || userMessage.getText().isBlank()
+                ? null : userMessage.getText();
+    }
+
+    private static String scope(Prompt prompt) {
+        return PromptFingerprint.sha256(PromptFingerprint.systemText(prompt), PromptFingerprint.options(prompt.getOptions()));
+    }
+
+    @Override
+    public String getName() {
+        return "SemanticCacheAdvisor";
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE + 100;
+    }
+}
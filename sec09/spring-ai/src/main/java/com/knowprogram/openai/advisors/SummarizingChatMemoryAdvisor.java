@@ -0,0 +1,230 @@
+package com.knowprogram.openai.advisors;
+
+import com.knowprogram.openai.memory.ConversationSummaryRepository;
+import com.knowprogram.openai.memory.ConversationSummaryRepository.Summary;
+import com.knowprogram.openai.memory.TieredChatMemoryRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.api.Advisor;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisor;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisorChain;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.beans.factory.DisposableBean;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps long conversations at a flat prompt size by folding their oldest messages into a rolling
+ * summary.
+ * <p>
+ * After every turn, a conversation whose stored window is longer than {@code threshold} is handed
+ * to a background summarizer, which asks a cheaper model to merge the messages beyond the newest
+ * {@code keepMessages} into the previous summary. It then stores the result as the next summary
+ * version and removes the folded messages from the window in one step under the conversation's
+ * write lock. Before every turn, the latest summary is appended to the system message. The request
+ * thread only reads the cached summary and the hot window.
+ * <p>
+ * Must run outside the chat memory advisor so the window already holds the assistant reply when
+ * the fold is scheduled. The folded messages leave the stored window, so the conversation id must
+ * not be shared with a chat client that does not read the summary.
+ */
+public class SummarizingChatMemoryAdvisor implements CallAdvisor, StreamAdvisor, DisposableBean {
+    private static final Logger logger = LoggerFactory.getLogger(SummarizingChatMemoryAdvisor.class);
+
+    private static final String SUMMARIZE_PROMPT = """
+            You maintain the running summary of a help desk conversation.
+            Merge the previous summary and the new messages into one updated summary.
+            Keep names, ticket numbers, issues, decisions and open questions. Drop greetings and small talk.
+            Answer with the summary only, in at most 200 words.""";
+
+    private final ChatClient summarizer;
+    private final TieredChatMemoryRepository chatMemoryRepository;
+    private final ConversationSummaryRepository summaryRepository;
+    private final int threshold;
+    private final int keepMessages;
+    private final Set<String> folding = ConcurrentHashMap.newKeySet();
+    private final ExecutorService executor;
+    private final Timer foldTime;
+    private final Counter folds;
+    private final Counter failures;
+
+    public SummarizingChatMemoryAdvisor(ChatClient summarizer, TieredChatMemoryRepository chatMemoryRepository,
+                                        ConversationSummaryRepository summaryRepository, int threshold,
+                                        int keepMessages, int threads, MeterRegistry meterRegistry) {
+        this.summarizer = summarizer;
+        this.chatMemoryRepository = chatMemoryRepository;
+        this.summaryRepository = summaryRepository;
+        this.threshold = threshold;
+        this.keepMessages = keepMessages;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "chat-memory-summarizer-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.foldTime = Timer.builder("chat.memory.summary.fold").register(meterRegistry);
+        this.folds = Counter.builder("chat.memory.summary.folds").tag("result", "success").register(meterRegistry);
+        this.failures = Counter.builder("chat.memory.summary.folds").tag("result", "failure").register(meterRegistry);
+    }
+
+    @Override
+    public ChatClientResponse adviseCall(ChatClientRequest chatClientRequest, CallAdvisorChain callAdvisorChain) {
+        String conversationId = conversationId(chatClientRequest);
+        ChatClientResponse clientResponse = callAdvisorChain.nextCall(withSummary(chatClientRequest, conversationId));
+        scheduleFold(conversationId);
+        return clientResponse;
+    }
+
+    @Override
+    public Flux<ChatClientResponse> adviseStream(ChatClientRequest chatClientRequest, StreamAdvisorChain streamAdvisorChain) {
+        String conversationId = conversationId(chatClientRequest);
+        return streamAdvisorChain.nextStream(withSummary(chatClientRequest, conversationId))
+                .doOnComplete(() -> scheduleFold(conversationId));
+    }
+
+    private ChatClientRequest withSummary(ChatClientRequest chatClientRequest, String conversationId) {
+        Summary summary = summaryRepository.findLatest(conversationId);
+        if (summary.version() == 0) {
+            return chatClientRequest;
+        }
+        String section = "\n\nSummary of the earlier conversation:\n" + summary.content();
+        return chatClientRequest.mutate()
+                .prompt(chatClientRequest.prompt().augmentSystemMessage(
+                        systemMessage -> systemMessage.mutate().text(systemMessage.getText() + section).build()))
+                .build();
+    }
+
+    private void scheduleFold(String conversationId) {
+        if (chatMemoryRepository.findByConversationId(conversationId).size() <= threshold
+                || !folding.add(conversationId)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    foldTime.record(() -> fold(conversationId));
+                    folds.increment();
+                } catch (RuntimeException e) {
+                    failures.increment();
+                    logger.warn("Failed to summarize conversation {}", conversationId, e);
+                } finally {
+                    folding.remove(conversationId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            folding.remove(conversationId);
+        }
+    }
+
+    private void fold(String conversationId) {
+        List<Message> window = chatMemoryRepository.findByConversationId(conversationId);
+        List<Message> conversation = window.stream().filter(message -> !(message instanceof SystemMessage)).toList();
+        int foldCount = conversation.size() - keepMessages;
+        // never leave a tool result behind without the assistant message that requested it
+        while (foldCount > 0 && foldCount < conversation.size()
+                && conversation.get(foldCount).getMessageType() == MessageType.TOOL) {
+            foldCount++;
+        }
+        if (window.size() <= threshold || foldCount <= 0) {
+            return;
+        }
+        List<Message> folded = conversation.subList(0, foldCount);
+        Summary previous = summaryRepository.findLatest(conversationId);
+        String content = summarizer.prompt()
+                .system(SUMMARIZE_PROMPT)
+                .user(transcript(previous, folded))
+                .call()
+                .content();
+        if (content == null || content.isBlank()) {
+            throw new IllegalStateException("Summarizer returned an empty summary");
+        }
+        String summary = content.strip();
+
+        // turns added while the summarizer was running are kept, only the folded prefix is dropped
+        chatMemoryRepository.replace(conversationId, current -> {
+            List<Message> remaining = new ArrayList<>();
+            int matched = 0;
+            for (Message message : current) {
+                if (message instanceof SystemMessage) {
+                    remaining.add(message);
+                } else if (matched < folded.size() && sameMessage(message, folded.get(matched))) {
+                    matched++;
+                } else {
+                    remaining.add(message);
+                }
+            }
+            if (matched != folded.size()) {
+                logger.debug("Window of conversation {} changed during summarization, keeping it as is", conversationId);
+                return null;
+            }
+            // stored under the conversation's lock so a concurrent clear takes the summary with it
+            Summary saved = summaryRepository.save(conversationId, previous, summary);
+            logger.debug("Folded {} messages of conversation {} into summary version {}",
+                    folded.size(), conversationId, saved.version());
+            return remaining;
+        });
+    }
+
+    private static String transcript(Summary previous, List<Message> messages) {
+        StringBuilder transcript = new StringBuilder();
+        if (previous.version() > 0) {
+            transcript.append("Previous summary:\n").append(previous.content()).append("\n\n");
+        }
+        transcript.append("New messages:\n");
+        for (Message message : messages) {
+            if (message.getMessageType() == MessageType.TOOL) {
+                continue;
+            }
+            transcript.append(message.getMessageType().getValue()).append(": ")
+                    .append(Objects.toString(message.getText(), "")).append('\n');
+        }
+        return transcript.toString();
+    }
+
+    private static boolean sameMessage(Message a, Message b) {
+        return a.getMessageType() == b.getMessageType()
+                && Objects.toString(a.getText(), "").equals(Objects.toString(b.getText(), ""));
+    }
+
+    private static String conversationId(ChatClientRequest chatClientRequest) {
+        Object conversationId = chatClientRequest.context().get(ChatMemory.CONVERSATION_ID);
+        return conversationId != null ? conversationId.toString() : ChatMemory.DEFAULT_CONVERSATION_ID;
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(30, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public String getName() {
+        return "SummarizingChatMemoryAdvisor";
+    }
+
+    @Override
+    public int getOrder() {
+        return Advisor.DEFAULT_CHAT_MEMORY_PRECEDENCE_ORDER - 100;
+    }
+}
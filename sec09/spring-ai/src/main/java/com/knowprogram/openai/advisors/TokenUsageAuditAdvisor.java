@@ -1,33 +1,128 @@
 package com.knowprogram.openai.advisors;
 
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.client.ChatClientRequest;
 import org.springframework.ai.chat.client.ChatClientResponse;
 import org.springframework.ai.chat.client.advisor.api.CallAdvisor;
 import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisor;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisorChain;
 import org.springframework.ai.chat.metadata.Usage;
 import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.HandlerMapping;
+import reactor.core.publisher.Flux;
+import reactor.util.context.Context;
 
-public class TokenUsageAuditAdvisor implements CallAdvisor {
+import java.util.concurrent.atomic.AtomicReference;
+
+@Component
+@RequiredArgsConstructor
+public class TokenUsageAuditAdvisor implements CallAdvisor, StreamAdvisor {
     private static final Logger logger = LoggerFactory.getLogger(TokenUsageAuditAdvisor.class);
 
+    /**
+     * Advisor param overriding the endpoint tag; by default the matched request mapping is used.
+     * Streams are advised off the request thread, so they read the mapping from the Reactor context
+     * entry of the same name that {@link #withRequestEndpoint} writes.
+     */
+    public static final String ENDPOINT = "token_usage_endpoint";
+
+    private final MeterRegistry meterRegistry;
+
     @Override
     public ChatClientResponse adviseCall(ChatClientRequest chatClientRequest, CallAdvisorChain callAdvisorChain) {
+        Tags tags = requestTags(chatClientRequest, requestEndpoint());
         ChatClientResponse clientResponse = callAdvisorChain.nextCall(chatClientRequest);
         ChatResponse chatResponse = clientResponse.chatResponse();
         if(chatResponse != null && chatResponse.getMetadata() != null) {
-            Usage usage = chatResponse.getMetadata().getUsage();
-            if(usage != null) {
-                logger.info("Prompt tokens: {}", usage.getPromptTokens());
-                logger.info("Completion tokens: {}", usage.getCompletionTokens());
-                logger.info("Total Token usage: {}", usage.getTotalTokens());
-                logger.info("Token usage details: {}", usage.toString());
-            }
+            record(tags, chatResponse.getMetadata().getModel(), chatResponse.getMetadata().getUsage());
         }
         return clientResponse;
     }
 
+    @Override
+    public Flux<ChatClientResponse> adviseStream(ChatClientRequest chatClientRequest, StreamAdvisorChain streamAdvisorChain) {
+        return Flux.deferContextual(contextView -> {
+            Tags tags = requestTags(chatClientRequest, contextView.getOrDefault(ENDPOINT, null));
+            return auditStream(tags, streamAdvisorChain.nextStream(chatClientRequest));
+        });
+    }
+
+    /**
+     * Captures the mapping of the current request, on the request thread, for the token audit of
+     * {@code stream}.
+     */
+    public static <T> Flux<T> withRequestEndpoint(Flux<T> stream) {
+        String endpoint = requestEndpoint();
+        return endpoint == null ? stream : stream.contextWrite(Context.of(ENDPOINT, endpoint));
+    }
+
+    private Flux<ChatClientResponse> auditStream(Tags tags, Flux<ChatClientResponse> responses) {
+        AtomicReference<ChatResponse> lastWithUsage = new AtomicReference<>();
+        return responses
+                .doOnNext(clientResponse -> {
+                    ChatResponse chatResponse = clientResponse.chatResponse();
+                    // OpenAI only reports usage on the final chunk of a stream
+                    if (chatResponse != null && chatResponse.getMetadata() != null
+                            && chatResponse.getMetadata().getUsage() != null
+                            && chatResponse.getMetadata().getUsage().getTotalTokens() != null
+                            && chatResponse.getMetadata().getUsage().getTotalTokens() > 0) {
+                        lastWithUsage.set(chatResponse);
+                    }
+                })
+                .doOnComplete(() -> {
+                    ChatResponse chatResponse = lastWithUsage.get();
+                    if (chatResponse != null) {
+                        record(tags, chatResponse.getMetadata().getModel(), chatResponse.getMetadata().getUsage());
+                    }
+                });
+    }
+
+    private void record(Tags tags, String model, Usage usage) {
+        if(usage == null) {
+            return;
+        }
+        Tags modelTags = tags.and("model", model == null || model.isBlank() ? "unknown" : model);
+        record(modelTags.and("type", "prompt"), usage.getPromptTokens());
+        record(modelTags.and("type", "completion"), usage.getCompletionTokens());
+        logger.debug("Token usage {} for {}", usage, modelTags);
+    }
+
+    private void record(Tags tags, Integer tokens) {
+        if (tokens == null) {
+            return;
+        }
+        meterRegistry.counter("chat.tokens", tags).increment(tokens);
+        DistributionSummary.builder("chat.tokens.per.request").tags(tags).register(meterRegistry).record(tokens);
+    }
+
+    private static Tags requestTags(ChatClientRequest chatClientRequest, String requestEndpoint) {
+        String conversationClass = chatClientRequest.context().containsKey(ChatMemory.CONVERSATION_ID) ? "memory" : "stateless";
+        Object endpoint = chatClientRequest.context().getOrDefault(ENDPOINT, requestEndpoint);
+        return Tags.of("endpoint", endpoint == null ? "none" : endpoint.toString(), "conversation", conversationClass);
+    }
+
+    private static String requestEndpoint() {
+        if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes) {
+            HttpServletRequest request = attributes.getRequest();
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            if (pattern != null) {
+                return pattern.toString();
+            }
+        }
+        return null;
+    }
+
     @Override
     public String getName() {
         return "TokenUsageAuditAdvisor";
@@ -0,0 +1,150 @@
+package com.knowprogram.openai.cache;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+
+/**
+ * Fixed-size ring log of key/value records in a memory-mapped file. Payloads live off-heap in the
+ * mapping and survive restarts; only a key-to-offset index is kept on the heap. When the write head
+ * reaches the end of the file it wraps around and overwrites the oldest records, which bounds the
+ * store to its configured capacity.
+ * <p>
+ * File layout: a header of {@code [int magic][int unused][int writePos][int tailPos]} followed by
+ * records of {@code [int RECORD][int valueLength][32-byte key][value]}. {@code tailPos} points at the
+ * oldest record from the previous lap, or is -1 when there is none.
+ */
+public class MappedResponseStore implements AutoCloseable {
+
+    public static final int KEY_LENGTH = 32;
+
+    private static final int FILE_MAGIC = 0x50434331;
+    private static final int RECORD = 0x52454331;
+    private static final int END = 0x454E4431;
+    private static final int HEADER = 16;
+    private static final int RECORD_HEADER = 8 + KEY_LENGTH;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final Map<String, Integer> index = new HashMap<>();
+    private int writePos;
+    private int tailPos;
+
+    public MappedResponseStore(Path file, int capacity) {
+        this.capacity = capacity;
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to map prompt cache file " + file, e);
+        }
+        if (buffer.getInt(0) == FILE_MAGIC && buffer.getInt(8) >= HEADER && buffer.getInt(8) <= capacity) {
+            writePos = buffer.getInt(8);
+            tailPos = buffer.getInt(12);
+            rebuildIndex();
+        } else {
+            writePos = HEADER;
+            tailPos = -1;
+            buffer.putInt(0, FILE_MAGIC);
+            writeHeader();
+        }
+    }
+
+    public synchronized byte[] get(byte[] key) {
+        Integer offset = index.get(HexFormat.of().formatHex(key));
+        if (offset == null) {
+            return null;
+        }
+        byte[] value = new byte[buffer.getInt(offset + 4)];
+        buffer.get(offset + RECORD_HEADER, value);
+        return value;
+    }
+
+    public synchronized void put(byte[] key, byte[] value) {
+        int length = RECORD_HEADER + value.length;
+        if (key.length != KEY_LENGTH || length > capacity - HEADER) {
+            return;
+        }
+        if (writePos + length > capacity) {
+            // whatever is left of the previous lap sits past the END marker and becomes unreachable
+            advanceTail(capacity);
+            if (writePos + 4 <= capacity) {
+                buffer.putInt(writePos, END);
+            }
+            writePos = HEADER;
+            tailPos = HEADER;
+        }
+        advanceTail(writePos + length);
+        buffer.putInt(writePos, RECORD);
+        buffer.putInt(writePos + 4, value.length);
+        buffer.put(writePos + 8, key);
+        buffer.put(writePos + RECORD_HEADER, value);
+        index.put(HexFormat.of().formatHex(key), writePos);
+        writePos += length;
+        writeHeader();
+    }
+
+    public synchronized int size() {
+        return index.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    private void advanceTail(int limit) {
+        while (tailPos >= 0 && tailPos < limit) {
+            if (tailPos + RECORD_HEADER > capacity || buffer.getInt(tailPos) != RECORD) {
+                tailPos = -1;
+                return;
+            }
+            evict(tailPos);
+            tailPos += RECORD_HEADER + buffer.getInt(tailPos + 4);
+        }
+    }
+
+    private void evict(int offset) {
+        byte[] key = new byte[KEY_LENGTH];
+        buffer.get(offset + 8, key);
+        index.remove(HexFormat.of().formatHex(key), offset);
+    }
+
+    private void rebuildIndex() {
+        if (tailPos >= writePos) {
+            scan(tailPos, capacity);
+        } else {
+            tailPos = -1;
+        }
+        scan(HEADER, writePos);
+    }
+
+    private void scan(int from, int to) {
+        int pos = from;
+        while (pos + RECORD_HEADER <= to && buffer.getInt(pos) == RECORD) {
+            int length = RECORD_HEADER + buffer.getInt(pos + 4);
+            if (length < RECORD_HEADER || pos + length > to) {
+                break;
+            }
+            byte[] key = new byte[KEY_LENGTH];
+            buffer.get(pos + 8, key);
+            index.put(HexFormat.of().formatHex(key), pos);
+            pos += length;
+        }
+    }
+
+    private void writeHeader() {
+        buffer.putInt(8, writePos);
+        buffer.putInt(12, tailPos);
+    }
+}
@@ -0,0 +1,52 @@
+package com.knowprogram.openai.cache;
+
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+public final class PromptFingerprint {
+
+    private PromptFingerprint() {
+    }
+
+    public static String systemText(Prompt prompt) {
+        SystemMessage systemMessage = prompt.getSystemMessage();
+        return systemMessage == null || systemMessage.getText() == null ? "" : systemMessage.getText();
+    }
+
+    public static String options(ChatOptions options) {
+        if (options == null) {
+            return "";
+        }
+        return String.join("|",
+                String.valueOf(options.getModel()),
+                String.valueOf(options.getTemperature()),
+                String.valueOf(options.getMaxTokens()),
+                String.valueOf(options.getTopP()),
+                String.valueOf(options.getTopK()),
+                String.valueOf(options.getFrequencyPenalty()),
+                String.valueOf(options.getPresencePenalty()),
+                String.valueOf(options.getStopSequences()));
+    }
+
+    public static String sha256(String... parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String part : parts) {
+                byte[] bytes = part.getBytes(StandardCharsets.UTF_8);
+                // length prefix keeps ("ab", "c") and ("a", "bc") apart
+                digest.update(Integer.toString(bytes.length).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) ':');
+                digest.update(bytes);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.knowprogram.openai.cache;
+
+import org.springframework.ai.chat.model.ChatResponse;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Bounded in-process cache of chat responses looked up by embedding similarity.
+ * Entries are indexed with random-hyperplane LSH so a lookup only scores the
+ * vectors in the probed buckets instead of the whole cache. Expired entries are
+ * dropped from the buckets a lookup probes; the others age out of the LRU order.
+ */
+public class SemanticResponseCache {
+
+    private static final long HYPERPLANE_SEED = 42L;
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final int hashBits;
+
+    private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Map<Integer, Map<Long, Entry>>> buckets = new HashMap<>();
+    private float[][] hyperplanes;
+    private long nextId;
+
+    public SemanticResponseCache(int maxEntries, long ttlMillis, int hashBits) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.hashBits = hashBits;
+    }
+
+    public synchronized Hit lookup(String scope, float[] embedding, double threshold) {
+        Map<Integer, Map<Long, Entry>> scopeBuckets = buckets.get(scope);
+        if (scopeBuckets == null) {
+            return null;
+        }
+        int signature = signature(embedding);
+        long now = System.currentTimeMillis();
+        Entry best = null;
+        double bestScore = threshold;
+        for (int probe = -1; probe < hashBits; probe++) {
+            int key = probe < 0 ? signature : signature ^ (1 << probe);
+            Map<Long, Entry> bucket = scopeBuckets.get(key);
+            if (bucket == null) {
+                continue;
+            }
+            for (Iterator<Entry> iterator = bucket.values().iterator(); iterator.hasNext(); ) {
+                Entry entry = iterator.next();
+                if (now - entry.createdAt > ttlMillis) {
+                    iterator.remove();
+                    entries.remove(entry.id);
+                    continue;
+                }
+                double score = cosine(embedding, entry.embedding);
+                if (score >= bestScore) {
+                    bestScore = score;
+                    best = entry;
+                }
+            }
+            if (bucket.isEmpty()) {
+                scopeBuckets.remove(key);
+            }
+        }
+        if (scopeBuckets.isEmpty()) {
+            buckets.remove(scope);
+        }
+        if (best == null) {
+            return null;
+        }
+        // touch the entry so it moves to the young end of the LRU order
+        entries.get(best.id);
+        return new Hit(best.response, bestScore, best.latencyMillis);
+    }
+
+    public synchronized void put(String scope, float[] embedding, ChatResponse response, long latencyMillis) {
+        long id = nextId++;
+        int signature = signature(embedding);
+        Entry entry = new Entry(id, scope, signature, embedding, response, latencyMillis, System.currentTimeMillis());
+        entries.put(id, entry);
+        buckets.computeIfAbsent(scope, s -> new HashMap<>())
+                .computeIfAbsent(signature, s -> new HashMap<>())
+                .put(id, entry);
+        while (entries.size() > maxEntries) {
+            Iterator<Entry> eldest = entries.values().iterator();
+            unindex(eldest.next());
+            eldest.remove();
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private void unindex(Entry entry) {
+        Map<Integer, Map<Long, Entry>> scopeBuckets = buckets.get(entry.scope);
+        if (scopeBuckets == null) {
+            return;
+        }
+        Map<Long, Entry> bucket = scopeBuckets.get(entry.signature);
+        if (bucket != null) {
+            bucket.remove(entry.id);
+            if (bucket.isEmpty()) {
+                scopeBuckets.remove(entry.signature);
+            }
+        }
+        if (scopeBuckets.isEmpty()) {
+            buckets.remove(entry.scope);
+        }
+    }
+
+    private int signature(float[] embedding) {
+        if (hyperplanes == null || hyperplanes[0].length != embedding.length) {
+            Random random = new Random(HYPERPLANE_SEED);
+            hyperplanes = new float[hashBits][embedding.length];
+            for (float[] plane : hyperplanes) {
+                for (int i = 0; i < plane.length; i++) {
+                    plane[i] = (float) random.nextGaussian();
+                }
+            }
+        }
+        int signature = 0;
+        for (int bit = 0; bit < hashBits; bit++) {
+            float[] plane = hyperplanes[bit];
+            double dot = 0;
+            for (int i = 0; i < embedding.length; i++) {
+                dot += plane[i] * embedding[i];
+            }
+            if (dot >= 0) {
+                signature |= 1 << bit;
+            }
+        }
+        return signature;
+    }
+
+    static double cosine(float[] a, float[] b) {
+        double dot = 0;
+        double normA = 0;
+        double normB = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        return normA == 0 || normB == 0 ? 0 : dot / Math.sqrt(normA * normB);
+    }
+
+    public record Hit(ChatResponse response, double score, long latencyMillis) {
+    }
+
+    private record Entry(long id, String scope, int signature, float[] embedding, ChatResponse response,
+                         long latencyMillis, long createdAt) {
+    }
+}
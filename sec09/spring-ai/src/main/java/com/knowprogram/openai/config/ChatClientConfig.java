@@ -1,24 +1,37 @@
 package com.knowprogram.openai.config;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.knowprogram.openai.advisors.PromptCacheAdvisor;
+import com.knowprogram.openai.advisors.SemanticCacheAdvisor;
 import com.knowprogram.openai.advisors.TokenUsageAuditAdvisor;
+import com.knowprogram.openai.cache.MappedResponseStore;
+import com.knowprogram.openai.cache.SemanticResponseCache;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.client.advisor.SimpleLoggerAdvisor;
 import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
 
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.List;
 
 @Configuration
 public class ChatClientConfig {
 
     @Bean
-    public ChatClient chatClient(ChatClient.Builder chatClientBuilder) {
+    public ChatClient chatClient(ChatClient.Builder chatClientBuilder, PromptCacheAdvisor promptCacheAdvisor,
+                                 SemanticCacheAdvisor semanticCacheAdvisor, TokenUsageAuditAdvisor tokenUsageAuditAdvisor) {
         ChatOptions chatOptions = ChatOptions.builder().model("gpt-4.1-mini").maxTokens(100).temperature(0.8).build();
 
         return chatClientBuilder
                 .defaultOptions(chatOptions)
-                .defaultAdvisors(List.of(new SimpleLoggerAdvisor(), new TokenUsageAuditAdvisor()))
+                .defaultAdvisors(List.of(promptCacheAdvisor, semanticCacheAdvisor, new SimpleLoggerAdvisor(), tokenUsageAuditAdvisor))
                 .defaultSystem("""
                         You are an internal HR assistant. Your role is to help employees with questions related to 
                         HR policies such as new policies, working hours, benefits, and code of conduct. If a 
@@ -28,4 +41,27 @@ public class ChatClientConfig {
                 .defaultUser("How can you help me?")
                 .build();
     }
+
+    @Bean
+    SemanticCacheAdvisor semanticCacheAdvisor(EmbeddingModel embeddingModel, MeterRegistry meterRegistry,
+                                              @Value("${app.cache.semantic.similarity-threshold}") double similarityThreshold,
+                                              @Value("${app.cache.semantic.max-entries}") int maxEntries,
+                                              @Value("${app.cache.semantic.ttl}") Duration ttl,
+                                              @Value("${app.cache.semantic.hash-bits}") int hashBits) {
+        SemanticResponseCache cache = new SemanticResponseCache(maxEntries, ttl.toMillis(), hashBits);
+        return new SemanticCacheAdvisor(embeddingModel, cache, similarityThreshold, meterRegistry);
+    }
+
+    @Bean
+    MappedResponseStore promptCacheStore(@Value("${app.cache.prompt.file}") Path file,
+                                         @Value("${app.cache.prompt.capacity}") DataSize capacity) {
+        return new MappedResponseStore(file, Math.toIntExact(capacity.toBytes()));
+    }
+
+    @Bean
+    PromptCacheAdvisor promptCacheAdvisor(@Qualifier("promptCacheStore") MappedResponseStore promptCacheStore,
+                                          ObjectMapper objectMapper,
+                                          MeterRegistry meterRegistry) {
+        return new PromptCacheAdvisor(promptCacheStore, objectMapper, meterRegistry);
+    }
 }
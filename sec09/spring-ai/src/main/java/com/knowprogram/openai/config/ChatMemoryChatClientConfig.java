@@ -1,46 +1,132 @@
 package com.knowprogram.openai.config;
 
 import com.knowprogram.openai.advisors.TokenUsageAuditAdvisor;
+import com.knowprogram.openai.memory.AppendOnlyChatMemoryRepository;
+import com.knowprogram.openai.memory.TieredChatMemoryRepository;
+import com.knowprogram.openai.memory.TokenBudgetChatMemory;
+import com.knowprogram.openai.memory.WriteBehindChatMemoryRepository;
+import com.knowprogram.openai.rag.Bm25Index;
+import com.knowprogram.openai.rag.CachingDocumentRetriever;
+import com.knowprogram.openai.rag.ContextCompressor;
+import com.knowprogram.openai.rag.CorpusVersion;
+import com.knowprogram.openai.rag.HybridDocumentRetriever;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
 import org.springframework.ai.chat.client.advisor.SimpleLoggerAdvisor;
 import org.springframework.ai.chat.client.advisor.api.Advisor;
 import org.springframework.ai.chat.memory.ChatMemory;
-import org.springframework.ai.chat.memory.MessageWindowChatMemory;
-import org.springframework.ai.chat.memory.repository.jdbc.JdbcChatMemoryRepository;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
 import org.springframework.ai.rag.advisor.RetrievalAugmentationAdvisor;
-import org.springframework.ai.rag.retrieval.search.VectorStoreDocumentRetriever;
+import org.springframework.ai.rag.retrieval.search.DocumentRetriever;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
 import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
 
+import java.time.Duration;
 import java.util.List;
 
 @Configuration
 public class ChatMemoryChatClientConfig {
 
     @Bean
-    ChatMemory chatMemory(JdbcChatMemoryRepository jdbcChatMemoryRepository){
-        return MessageWindowChatMemory
-                .builder()
-                .maxMessages(10)
-                .chatMemoryRepository(jdbcChatMemoryRepository)
-                .build();
+    ChatMemory chatMemory(TieredChatMemoryRepository tieredChatMemoryRepository,
+                          TokenCountEstimator tokenCountEstimator,
+                          @Value("${app.chat-memory.token-budget.chat-memory-chat-client}") int tokenBudget,
+                          @Value("${app.chat-memory.window-size}") int windowSize){
+        return new TokenBudgetChatMemory(tieredChatMemoryRepository, tokenCountEstimator, tokenBudget, windowSize);
+    }
+
+    @Bean
+    TokenCountEstimator tokenCountEstimator() {
+        return new JTokkitTokenCountEstimator();
+    }
+
+    @Bean
+    TieredChatMemoryRepository tieredChatMemoryRepository(AppendOnlyChatMemoryRepository appendOnlyChatMemoryRepository,
+                                                          ObjectProvider<WriteBehindChatMemoryRepository> writeBehindChatMemoryRepository,
+                                                          MeterRegistry meterRegistry,
+                                                          @Value("${app.chat-memory.tier.mode}") TieredChatMemoryRepository.Mode mode,
+                                                          @Value("${app.chat-memory.tier.maximum-size}") long maximumSize,
+                                                          @Value("${app.chat-memory.tier.expire-after-access}") Duration expireAfterAccess) {
+        ChatMemoryRepository cold = mode == TieredChatMemoryRepository.Mode.WRITE_BEHIND
+                ? writeBehindChatMemoryRepository.getObject()
+                : appendOnlyChatMemoryRepository;
+        return new TieredChatMemoryRepository(cold, mode, maximumSize, expireAfterAccess, meterRegistry);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "app.chat-memory.tier.mode", havingValue = "WRITE_BEHIND")
+    WriteBehindChatMemoryRepository writeBehindChatMemoryRepository(AppendOnlyChatMemoryRepository appendOnlyChatMemoryRepository,
+                                                                    JdbcTemplate jdbcTemplate,
+                                                                    PlatformTransactionManager transactionManager,
+                                                                    @Value("${app.chat-memory.write-behind.queue-capacity}") int queueCapacity,
+                                                                    @Value("${app.chat-memory.write-behind.batch-size}") int batchSize,
+                                                                    @Value("${app.chat-memory.write-behind.flush-interval}") Duration flushInterval) {
+        return new WriteBehindChatMemoryRepository(appendOnlyChatMemoryRepository, jdbcTemplate, transactionManager,
+                queueCapacity, batchSize, flushInterval.toMillis());
+    }
+
+    @Bean
+    AppendOnlyChatMemoryRepository appendOnlyChatMemoryRepository(JdbcTemplate jdbcTemplate,
+                                                                  PlatformTransactionManager transactionManager,
+                                                                  @Value("${app.chat-memory.window-size}") int windowSize,
+                                                                  @Value("${app.chat-memory.append-only.max-cached-tails}") int maxCachedTails,
+                                                                  @Value("${app.chat-memory.append-only.compaction-interval}") Duration compactionInterval) {
+        return new AppendOnlyChatMemoryRepository(jdbcTemplate, transactionManager, windowSize, maxCachedTails,
+                compactionInterval.toMillis());
     }
 
     @Bean("chatMemoryChatClient")
-    public ChatClient chatMemoryChatClient(ChatClient.Builder chatClientBuilder, ChatMemory chatMemory, RetrievalAugmentationAdvisor retrievalAugmentationAdvisor) {
+    public ChatClient chatMemoryChatClient(ChatClient.Builder chatClientBuilder,
+                                           @Qualifier("chatMemory") ChatMemory chatMemory,
+                                           RetrievalAugmentationAdvisor retrievalAugmentationAdvisor,
+                                           TokenUsageAuditAdvisor tokenUsageAuditAdvisor) {
         Advisor loggerAdvisor = new SimpleLoggerAdvisor();
         Advisor memoryAdvisor = MessageChatMemoryAdvisor.builder(chatMemory).build();
-        Advisor tokenUsageAdvisor = new TokenUsageAuditAdvisor();
-        return chatClientBuilder.defaultAdvisors(List.of(loggerAdvisor, memoryAdvisor, tokenUsageAdvisor, retrievalAugmentationAdvisor)).build();
+        return chatClientBuilder.defaultAdvisors(List.of(loggerAdvisor, memoryAdvisor, tokenUsageAuditAdvisor, retrievalAugmentationAdvisor)).build();
+    }
+
+    @Bean
+    RetrievalAugmentationAdvisor retrievalAugmentationAdvisor(HybridDocumentRetriever hybridDocumentRetriever,
+                                                              ContextCompressor contextCompressor,
+                                                              CorpusVersion corpusVersion, MeterRegistry meterRegistry,
+                                                              @Value("${app.rag.cache.maximum-size}") long maximumSize,
+                                                              @Value("${app.rag.cache.expire-after-write}") Duration expireAfterWrite){
+        DocumentRetriever documentRetriever = new CachingDocumentRetriever(hybridDocumentRetriever, corpusVersion,
+                maximumSize, expireAfterWrite, meterRegistry);
+        return RetrievalAugmentationAdvisor.builder()
+                .documentRetriever(documentRetriever)
+                .documentPostProcessors(contextCompressor)
+                .build();
+    }
+
+    @Bean
+    ContextCompressor contextCompressor(TokenCountEstimator tokenCountEstimator, MeterRegistry meterRegistry,
+                                        @Value("${app.rag.compression.max-hamming-distance}") int maxHammingDistance,
+                                        @Value("${app.rag.compression.token-budget}") int tokenBudget) {
+        return new ContextCompressor(tokenCountEstimator, maxHammingDistance, tokenBudget, meterRegistry);
     }
 
     @Bean
-    RetrievalAugmentationAdvisor retrievalAugmentationAdvisor(VectorStore vectorStore){
-        return RetrievalAugmentationAdvisor.builder().documentRetriever(
-                VectorStoreDocumentRetriever.builder().vectorStore(vectorStore).topK(3).similarityThreshold(0.5).build()
-        ).build();
+    HybridDocumentRetriever hybridDocumentRetriever(VectorStore vectorStore, Bm25Index keywordIndex,
+                                                    MeterRegistry meterRegistry,
+                                                    @Value("${app.rag.hybrid.top-k}") int topK,
+                                                    @Value("${app.rag.hybrid.candidates}") int candidates,
+                                                    @Value("${app.rag.hybrid.similarity-threshold}") double similarityThreshold,
+                                                    @Value("${app.rag.hybrid.rrf-k}") int rrfK,
+                                                    @Value("${app.rag.hybrid.search-threads}") int searchThreads,
+                                                    @Value("${app.rag.hybrid.queue-capacity}") int queueCapacity) {
+        return new HybridDocumentRetriever(vectorStore, keywordIndex, topK, candidates, similarityThreshold, rrfK,
+                searchThreads, queueCapacity, meterRegistry);
     }
 
 }
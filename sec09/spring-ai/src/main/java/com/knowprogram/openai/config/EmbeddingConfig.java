@@ -0,0 +1,48 @@
+package com.knowprogram.openai.config;
+
+import com.knowprogram.openai.cache.MappedResponseStore;
+import com.knowprogram.openai.embedding.BatchingEmbeddingModel;
+import com.knowprogram.openai.embedding.CachingEmbeddingModel;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.ai.openai.OpenAiEmbeddingModel;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+@Configuration
+public class EmbeddingConfig {
+
+    @Bean
+    @Primary
+    CachingEmbeddingModel cachingEmbeddingModel(BatchingEmbeddingModel batchingEmbeddingModel,
+                                                @Qualifier("embeddingCacheStore") MappedResponseStore embeddingCacheStore,
+                                                MeterRegistry meterRegistry,
+                                                @Value("${spring.ai.openai.embedding.options.model}") String model,
+                                                @Value("${app.cache.embedding.max-entries}") long maxEntries) {
+        return new CachingEmbeddingModel(batchingEmbeddingModel, model, embeddingCacheStore, maxEntries, meterRegistry);
+    }
+
+    @Bean
+    BatchingEmbeddingModel batchingEmbeddingModel(OpenAiEmbeddingModel openAiEmbeddingModel, MeterRegistry meterRegistry,
+                                                  @Value("${app.embedding.batch.window}") Duration window,
+                                                  @Value("${app.embedding.batch.timeout}") Duration timeout,
+                                                  @Value("${app.embedding.batch.max-size}") int maxSize,
+                                                  @Value("${app.embedding.batch.queue-capacity}") int queueCapacity,
+                                                  @Value("${app.embedding.batch.concurrency}") int concurrency) {
+        return new BatchingEmbeddingModel(openAiEmbeddingModel, window.toMillis(), timeout.toMillis(), maxSize,
+                queueCapacity, concurrency, meterRegistry);
+    }
+
+    @Bean
+    MappedResponseStore embeddingCacheStore(@Value("${app.cache.embedding.file}") Path file,
+                                            @Value("${app.cache.embedding.capacity}") DataSize capacity) {
+        return new MappedResponseStore(file, Math.toIntExact(capacity.toBytes()));
+    }
+
+}
@@ -1,17 +1,32 @@
 package com.knowprogram.openai.config;
 
+import com.knowprogram.openai.advisors.SummarizingChatMemoryAdvisor;
 import com.knowprogram.openai.advisors.TokenUsageAuditAdvisor;
+import com.knowprogram.openai.memory.ConversationSummaryRepository;
+import com.knowprogram.openai.memory.TieredChatMemoryRepository;
+import com.knowprogram.openai.memory.TokenBudgetChatMemory;
+import com.knowprogram.openai.tools.BoundedToolLoopChatModel;
 import com.knowprogram.openai.tools.TimeTools;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
 import org.springframework.ai.chat.client.advisor.SimpleLoggerAdvisor;
 import org.springframework.ai.chat.client.advisor.api.Advisor;
 import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import org.springframework.ai.openai.OpenAiChatOptions;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.io.Resource;
+import org.springframework.jdbc.core.JdbcTemplate;
 
+import java.time.Duration;
 import java.util.List;
 
 @Configuration
@@ -20,17 +35,66 @@ public class HelpDeskChartClientConfig {
     @Value("classpath:/prompt-templates/helpDeskSystemPromptTemplate.st")
     Resource helpDeskSystemPromptTemplate;
 
+    @Bean
+    ChatMemory helpDeskChatMemory(TieredChatMemoryRepository tieredChatMemoryRepository,
+                                  ConversationSummaryRepository conversationSummaryRepository,
+                                  TokenCountEstimator tokenCountEstimator,
+                                  @Value("${app.chat-memory.token-budget.help-desk-chat-client}") int tokenBudget,
+                                  @Value("${app.chat-memory.window-size}") int windowSize) {
+        return new TokenBudgetChatMemory(tieredChatMemoryRepository, tokenCountEstimator, tokenBudget, windowSize) {
+            // the rolling summary stands for the folded start of the window and goes with it
+            @Override
+            public void clear(String conversationId) {
+                super.clear(conversationId);
+                conversationSummaryRepository.deleteByConversationId(conversationId);
+            }
+        };
+    }
+
+    @Bean
+    ConversationSummaryRepository conversationSummaryRepository(JdbcTemplate jdbcTemplate,
+                                                                @Value("${app.chat-memory.summary.keep-versions}") int keepVersions,
+                                                                @Value("${app.chat-memory.tier.maximum-size}") long maximumSize,
+                                                                @Value("${app.chat-memory.tier.expire-after-access}") Duration expireAfterAccess) {
+        return new ConversationSummaryRepository(jdbcTemplate, keepVersions, maximumSize, expireAfterAccess);
+    }
+
+    @Bean
+    SummarizingChatMemoryAdvisor summarizingChatMemoryAdvisor(ChatModel chatModel,
+                                                              TieredChatMemoryRepository tieredChatMemoryRepository,
+                                                              ConversationSummaryRepository conversationSummaryRepository,
+                                                              MeterRegistry meterRegistry,
+                                                              @Value("${app.chat-memory.summary.model}") String model,
+                                                              @Value("${app.chat-memory.summary.threshold}") int threshold,
+                                                              @Value("${app.chat-memory.summary.keep-messages}") int keepMessages,
+                                                              @Value("${app.chat-memory.summary.threads}") int threads) {
+        ChatClient summarizer = ChatClient.builder(chatModel)
+                .defaultOptions(OpenAiChatOptions.builder().model(model).temperature(0.0).build())
+                .build();
+        return new SummarizingChatMemoryAdvisor(summarizer, tieredChatMemoryRepository, conversationSummaryRepository,
+                threshold, keepMessages, threads, meterRegistry);
+    }
+
     @Bean("helpDeskChartClient")
-    public ChatClient helpDeskChartClient(ChatClient.Builder chatClientBuilder,
-                                     ChatMemory chatMemory,
-                                     TimeTools timeTools) {
+    public ChatClient helpDeskChartClient(ChatModel chatModel,
+                                     ToolCallingManager toolCallingManager,
+                                     ObjectProvider<ObservationRegistry> observationRegistry,
+                                     MeterRegistry meterRegistry,
+                                     @Qualifier("helpDeskChatMemory") ChatMemory chatMemory,
+                                     SummarizingChatMemoryAdvisor summarizingChatMemoryAdvisor,
+                                     TimeTools timeTools,
+                                     TokenUsageAuditAdvisor tokenUsageAuditAdvisor,
+                                     @Value("${app.tools.loop.max-rounds}") int maxRounds,
+                                     @Value("${app.tools.loop.token-budget}") long tokenBudget,
+                                     @Value("${app.tools.loop.deadline}") Duration deadline) {
         Advisor loggerAdvisor = new SimpleLoggerAdvisor();
         Advisor memoryAdvisor = MessageChatMemoryAdvisor.builder(chatMemory).build();
-        Advisor tokenUsageAdvisor = new TokenUsageAuditAdvisor();
-        return chatClientBuilder
+        ChatModel boundedToolLoopChatModel = new BoundedToolLoopChatModel(chatModel, toolCallingManager, maxRounds,
+                tokenBudget, deadline, meterRegistry);
+        return ChatClient.builder(boundedToolLoopChatModel, observationRegistry.getIfUnique(() -> ObservationRegistry.NOOP), null)
                 .defaultSystem(helpDeskSystemPromptTemplate)
                 .defaultTools(timeTools)
-                .defaultAdvisors(List.of(loggerAdvisor, memoryAdvisor, tokenUsageAdvisor))
+                .defaultAdvisors(List.of(loggerAdvisor, summarizingChatMemoryAdvisor, memoryAdvisor, tokenUsageAuditAdvisor))
                 .build();
     }
 
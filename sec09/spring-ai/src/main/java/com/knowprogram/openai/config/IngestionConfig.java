@@ -0,0 +1,69 @@
+package com.knowprogram.openai.config;
+
+import com.knowprogram.openai.rag.Bm25Index;
+import com.knowprogram.openai.rag.CorpusVersion;
+import com.knowprogram.openai.rag.IngestionPipeline;
+import com.knowprogram.openai.rag.ParallelTokenTextSplitter;
+import com.knowprogram.openai.rag.StreamingDocumentReader;
+import com.knowprogram.openai.rag.WatchedDirectoryIngestion;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.support.ResourcePatternResolver;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+@Configuration
+public class IngestionConfig {
+
+    @Bean
+    Bm25Index keywordIndex() {
+        return new Bm25Index();
+    }
+
+    @Bean
+    CorpusVersion corpusVersion() {
+        return new CorpusVersion();
+    }
+
+    @Bean
+    IngestionPipeline ingestionPipeline(VectorStore vectorStore, Bm25Index keywordIndex, CorpusVersion corpusVersion,
+                                        MeterRegistry meterRegistry,
+                                        @Value("${spring.ai.vectorstore.qdrant.collection-name}") String collectionName,
+                                        @Value("${app.ingestion.batch-size}") int batchSize,
+                                        @Value("${app.ingestion.parallelism}") int parallelism) {
+        return new IngestionPipeline(vectorStore, keywordIndex, corpusVersion, collectionName, batchSize, parallelism, meterRegistry);
+    }
+
+    @Bean
+    StreamingDocumentReader streamingDocumentReader(ResourcePatternResolver resourcePatternResolver,
+                                                    @Value("${app.ingestion.reader.queue-capacity}") int queueCapacity,
+                                                    @Value("${app.ingestion.reader.max-buffered-chars}") int maxBufferedChars,
+                                                    @Value("${app.ingestion.reader.pages-per-split}") int pagesPerSplit) {
+        return new StreamingDocumentReader(resourcePatternResolver, queueCapacity, maxBufferedChars, pagesPerSplit);
+    }
+
+    @Bean
+    ParallelTokenTextSplitter textSplitter(@Value("${app.ingestion.splitter.chunk-size}") int chunkSize,
+                                           @Value("${app.ingestion.splitter.max-num-chunks}") int maxNumChunks,
+                                           @Value("${app.ingestion.splitter.parallelism}") int parallelism) {
+        return new ParallelTokenTextSplitter(chunkSize, maxNumChunks, parallelism);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "app.ingestion.hr-policies.watch-directory")
+    WatchedDirectoryIngestion hrPolicyWatcher(IngestionPipeline ingestionPipeline,
+                                              StreamingDocumentReader streamingDocumentReader,
+                                              ParallelTokenTextSplitter textSplitter,
+                                              @Value("${app.ingestion.hr-policies.watch-directory}") Path directory,
+                                              @Value("${app.ingestion.hr-policies.watch-glob}") String glob,
+                                              @Value("${app.ingestion.watch.debounce}") Duration debounce) {
+        return new WatchedDirectoryIngestion(ingestionPipeline, streamingDocumentReader, textSplitter, "hr-policies",
+                directory, glob, debounce.toMillis());
+    }
+
+}
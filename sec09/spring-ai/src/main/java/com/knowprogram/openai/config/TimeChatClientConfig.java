@@ -1,12 +1,17 @@
 package com.knowprogram.openai.config;
 
 import com.knowprogram.openai.advisors.TokenUsageAuditAdvisor;
+import com.knowprogram.openai.memory.TieredChatMemoryRepository;
+import com.knowprogram.openai.memory.TokenBudgetChatMemory;
 import com.knowprogram.openai.tools.TimeTools;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
 import org.springframework.ai.chat.client.advisor.SimpleLoggerAdvisor;
 import org.springframework.ai.chat.client.advisor.api.Advisor;
 import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -15,16 +20,24 @@ import java.util.List;
 @Configuration
 public class TimeChatClientConfig {
 
+    @Bean
+    ChatMemory timeChatMemory(TieredChatMemoryRepository tieredChatMemoryRepository,
+                              TokenCountEstimator tokenCountEstimator,
+                              @Value("${app.chat-memory.token-budget.time-chat-client}") int tokenBudget,
+                              @Value("${app.chat-memory.window-size}") int windowSize) {
+        return new TokenBudgetChatMemory(tieredChatMemoryRepository, tokenCountEstimator, tokenBudget, windowSize);
+    }
+
     @Bean("timeChatClient")
     public ChatClient timeChatClient(ChatClient.Builder chatClientBuilder,
-                                     ChatMemory chatMemory,
-                                     TimeTools timeTools) {
+                                     @Qualifier("timeChatMemory") ChatMemory chatMemory,
+                                     TimeTools timeTools,
+                                     TokenUsageAuditAdvisor tokenUsageAuditAdvisor) {
         Advisor loggerAdvisor = new SimpleLoggerAdvisor();
         Advisor memoryAdvisor = MessageChatMemoryAdvisor.builder(chatMemory).build();
-        Advisor tokenUsageAdvisor = new TokenUsageAuditAdvisor();
         return chatClientBuilder
                 .defaultTools(timeTools)
-                .defaultAdvisors(List.of(loggerAdvisor, memoryAdvisor, tokenUsageAdvisor))
+                .defaultAdvisors(List.of(loggerAdvisor, memoryAdvisor, tokenUsageAuditAdvisor))
                 .build();
     }
 
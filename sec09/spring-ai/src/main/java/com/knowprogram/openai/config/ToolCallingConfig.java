@@ -0,0 +1,51 @@
+package com.knowprogram.openai.config;
+
+import com.knowprogram.openai.tools.HelpdeskTools;
+import com.knowprogram.openai.tools.ParallelToolCallingManager;
+import com.knowprogram.openai.tools.ToolResultCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import org.springframework.ai.tool.ToolCallbackProvider;
+import org.springframework.ai.tool.execution.ToolExecutionExceptionProcessor;
+import org.springframework.ai.tool.resolution.ToolCallbackResolver;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.time.Duration;
+
+@Configuration
+public class ToolCallingConfig {
+
+    @Bean
+    ToolCallingManager toolCallingManager(ToolCallbackResolver toolCallbackResolver,
+                                          ToolExecutionExceptionProcessor toolExecutionExceptionProcessor,
+                                          ObjectProvider<ObservationRegistry> observationRegistry,
+                                          MeterRegistry meterRegistry, Environment environment,
+                                          @Value("${app.tools.executor.threads}") int threads,
+                                          @Value("${app.tools.executor.queue-capacity}") int queueCapacity,
+                                          @Value("${app.tools.timeout.default}") Duration defaultTimeout) {
+        ToolCallingManager delegate = ToolCallingManager.builder()
+                .toolCallbackResolver(toolCallbackResolver)
+                .toolExecutionExceptionProcessor(toolExecutionExceptionProcessor)
+                .observationRegistry(observationRegistry.getIfUnique(() -> ObservationRegistry.NOOP))
+                .build();
+        return new ParallelToolCallingManager(delegate,
+                toolName -> environment.getProperty("app.tools.timeout." + toolName, Duration.class, defaultTimeout),
+                threads, queueCapacity, meterRegistry);
+    }
+
+    @Bean
+    ToolResultCache toolResultCache(MeterRegistry meterRegistry,
+                                    @Value("${app.tools.cache.maximum-size}") long maximumSize) {
+        return new ToolResultCache(maximumSize, meterRegistry);
+    }
+
+    @Bean
+    ToolCallbackProvider helpdeskToolCallbacks(ToolResultCache toolResultCache, HelpdeskTools helpdeskTools) {
+        return toolResultCache.wrap(helpdeskTools);
+    }
+}
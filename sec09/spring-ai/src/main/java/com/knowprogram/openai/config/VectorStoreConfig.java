@@ -0,0 +1,37 @@
+package com.knowprogram.openai.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.knowprogram.openai.vectorstore.HnswVectorStore;
+import com.knowprogram.openai.vectorstore.Quantization;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.TokenCountBatchingStrategy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Replaces the Qdrant store when {@code spring.ai.vectorstore.type=hnsw}, which also switches off the
+ * Qdrant auto-configuration.
+ */
+@Configuration
+@ConditionalOnProperty(name = "spring.ai.vectorstore.type", havingValue = "hnsw")
+public class VectorStoreConfig {
+
+    @Bean
+    HnswVectorStore hnswVectorStore(EmbeddingModel embeddingModel, ObjectMapper objectMapper,
+                                    @Value("${app.vectorstore.hnsw.file}") Path file,
+                                    @Value("${app.vectorstore.hnsw.m}") int m,
+                                    @Value("${app.vectorstore.hnsw.ef-construction}") int efConstruction,
+                                    @Value("${app.vectorstore.hnsw.ef-search}") int efSearch,
+                                    @Value("${app.vectorstore.hnsw.quantization}") Quantization quantization,
+                                    @Value("${app.vectorstore.hnsw.rerank-factor}") int rerankFactor,
+                                    @Value("${app.vectorstore.hnsw.snapshot-interval}") Duration snapshotInterval) {
+        return new HnswVectorStore(embeddingModel, new TokenCountBatchingStrategy(), objectMapper, file, m,
+                efConstruction, efSearch, quantization, rerankFactor, snapshotInterval.toMillis());
+    }
+
+}
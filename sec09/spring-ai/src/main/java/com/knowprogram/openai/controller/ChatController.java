@@ -1,21 +1,35 @@
 package com.knowprogram.openai.controller;
 
 import com.knowprogram.openai.advisors.TokenUsageAuditAdvisor;
+import com.knowprogram.openai.metrics.StreamingMetrics;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.openai.OpenAiChatOptions;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
 
 @RestController
 @RequestMapping("/api")
 public class ChatController {
 
+    private static final String IT_HELP_SYSTEM_PROMPT = """
+            You are an internal IT help desk assistant. Your role is to assist employees 
+            with IT-related issues, such as resetting passwords, unlocking accounts, 
+            and answering questions related to IT policies. If a user requests help with 
+            anything outside of these responsibilities, respond politely and inform them 
+            that you are only able to assist with IT support tasks within your defined scope.
+            """;
+
     private final ChatClient chatClient;
+    private final StreamingMetrics streamingMetrics;
 
-    public ChatController(ChatClient chatClient) {
+    public ChatController(ChatClient chatClient, StreamingMetrics streamingMetrics) {
         this.chatClient = chatClient;
+        this.streamingMetrics = streamingMetrics;
     }
 
     @GetMapping("/chat")
@@ -27,20 +41,33 @@ public class ChatController {
                 .call().content();
     }
 
+    @GetMapping(value = "/chat/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<String>> chatStream(@RequestParam String message) {
+        return streamingMetrics.sse("chat", chatClient
+                .prompt()
+                .options(OpenAiChatOptions.builder().frequencyPenalty(0.5).presencePenalty(0.5).maxTokens(10).build())
+                .user(message)
+                .stream().content());
+    }
+
     @GetMapping("/it-help")
     public String itHelp(@RequestParam String message) {
         return chatClient
                 .prompt()
-                .system("""
-                    You are an internal IT help desk assistant. Your role is to assist employees 
-                    with IT-related issues, such as resetting passwords, unlocking accounts, 
-                    and answering questions related to IT policies. If a user requests help with 
-                    anything outside of these responsibilities, respond politely and inform them 
-                    that you are only able to assist with IT support tasks within your defined scope.
-                    """)
+                .system(IT_HELP_SYSTEM_PROMPT)
                 .user(message)
                 .call()
                 .content();
     }
 
+    @GetMapping(value = "/it-help/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<String>> itHelpStream(@RequestParam String message) {
+        return streamingMetrics.sse("it-help", chatClient
+                .prompt()
+                .system(IT_HELP_SYSTEM_PROMPT)
+                .user(message)
+                .stream()
+                .content());
+    }
+
 }
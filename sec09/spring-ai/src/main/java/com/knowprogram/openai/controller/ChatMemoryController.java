@@ -1,9 +1,13 @@
 package com.knowprogram.openai.controller;
 
+import com.knowprogram.openai.metrics.StreamingMetrics;
 import lombok.RequiredArgsConstructor;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 
 import static org.springframework.ai.chat.memory.ChatMemory.CONVERSATION_ID;
 
@@ -13,6 +17,7 @@ import static org.springframework.ai.chat.memory.ChatMemory.CONVERSATION_ID;
 public class ChatMemoryController {
 
     private final ChatClient chatMemoryChatClient;
+    private final StreamingMetrics streamingMetrics;
 
     @GetMapping("/chat-memory")
     public ResponseEntity<String> chatMemory(@RequestParam String message, @RequestHeader String username) {
@@ -22,4 +27,13 @@ public class ChatMemoryController {
                 .advisors(advisorSpec -> advisorSpec.param(CONVERSATION_ID, username))
                 .call().content());
     }
+
+    @GetMapping(value = "/chat-memory/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<String>> chatMemoryStream(@RequestParam String message, @RequestHeader String username) {
+        return streamingMetrics.sse("chat-memory", chatMemoryChatClient
+                .prompt()
+                .user(message)
+                .advisors(advisorSpec -> advisorSpec.param(CONVERSATION_ID, username))
+                .stream().content());
+    }
 }
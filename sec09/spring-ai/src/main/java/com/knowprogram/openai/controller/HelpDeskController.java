@@ -1,10 +1,14 @@
 package com.knowprogram.openai.controller;
 
-import com.knowprogram.openai.tools.HelpdeskTools;
+import com.knowprogram.openai.metrics.StreamingMetrics;
 import lombok.RequiredArgsConstructor;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.tool.ToolCallbackProvider;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 
 import java.util.Map;
 
@@ -15,17 +19,37 @@ import static org.springframework.ai.chat.memory.ChatMemory.CONVERSATION_ID;
 @RequiredArgsConstructor
 public class HelpDeskController {
     private final ChatClient helpDeskChartClient;
-    private final HelpdeskTools helpdeskTools;
+    private final ToolCallbackProvider helpdeskToolCallbacks;
+    private final StreamingMetrics streamingMetrics;
+
+    /**
+     * The help desk folds its window into a summary, so it keeps a memory of its own instead of sharing
+     * the user's conversation with the other chat clients.
+     */
+    public static String conversationId(String username) {
+        return "helpdesk:" + username;
+    }
 
     @GetMapping("/help-desk")
     public ResponseEntity<String> helpDesk(@RequestHeader String username, @RequestParam String message) {
         String answer = helpDeskChartClient.prompt()
-                .advisors(advisorSpec -> advisorSpec.param(CONVERSATION_ID, username))
+                .advisors(advisorSpec -> advisorSpec.param(CONVERSATION_ID, conversationId(username)))
                 .user(message)
-                .tools(helpdeskTools)
+                .toolCallbacks(helpdeskToolCallbacks)
                 .toolContext(Map.of("username", username))
                 .call()
                 .content();
         return ResponseEntity.ok(answer);
     }
+
+    @GetMapping(value = "/help-desk/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<String>> helpDeskStream(@RequestHeader String username, @RequestParam String message) {
+        return streamingMetrics.sse("help-desk", helpDeskChartClient.prompt()
+                .advisors(advisorSpec -> advisorSpec.param(CONVERSATION_ID, conversationId(username)))
+                .user(message)
+                .toolCallbacks(helpdeskToolCallbacks)
+                .toolContext(Map.of("username", username))
+                .stream()
+                .content());
+    }
 }
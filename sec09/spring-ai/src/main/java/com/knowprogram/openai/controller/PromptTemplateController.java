@@ -1,5 +1,7 @@
 package com.knowprogram.openai.controller;
 
+import com.knowprogram.openai.advisors.PromptCacheAdvisor;
+import com.knowprogram.openai.advisors.SemanticCacheAdvisor;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
@@ -32,6 +34,8 @@ public class PromptTemplateController {
                 .user(promptTemplateSpec -> promptTemplateSpec.text(userPromptTemplate)
                         .param("customerName", customerName)
                         .param("customerMessage", customerMessage))
+                // the email is personal, only the exact same request may share it
+                .advisors(a -> a.param(PromptCacheAdvisor.ENABLED, true).param(SemanticCacheAdvisor.ENABLED, false))
                 .call()
                 .content();
     }
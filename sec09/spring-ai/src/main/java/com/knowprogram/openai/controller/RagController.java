@@ -1,5 +1,6 @@
 package com.knowprogram.openai.controller;
 
+import com.knowprogram.openai.metrics.StreamingMetrics;
 import lombok.RequiredArgsConstructor;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.document.Document;
@@ -7,8 +8,11 @@ import org.springframework.ai.vectorstore.SearchRequest;
 import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 
 import java.util.List;
 import java.util.stream.Collectors;
@@ -21,6 +25,7 @@ import static org.springframework.ai.chat.memory.ChatMemory.CONVERSATION_ID;
 public class RagController {
     private final ChatClient chatMemoryChatClient;
     private final VectorStore vectorStore;
+    private final StreamingMetrics streamingMetrics;
 
     @Value("classpath:/prompt-templates/system-prompt-random-data-template.st")
     Resource promptTemplate;
@@ -49,6 +54,16 @@ public class RagController {
         return ResponseEntity.ok(answer);
     }
 
+    @GetMapping(value = "/random/chat/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<String>> randomChatStream(@RequestParam String message, @RequestHeader String username) {
+        return streamingMetrics.sse("rag-random", chatMemoryChatClient
+                .prompt()
+                .advisors(a -> a.param(CONVERSATION_ID, username))
+                .user(message)
+                .stream()
+                .content());
+    }
+
     @GetMapping("/document/chat")
     public ResponseEntity<String> documentChat(@RequestParam String message, @RequestHeader String username) {
 //        SearchRequest searchRequest = SearchRequest.builder()
@@ -69,4 +84,14 @@ public class RagController {
                 .content();
         return ResponseEntity.ok(answer);
     }
+
+    @GetMapping(value = "/document/chat/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<String>> documentChatStream(@RequestParam String message, @RequestHeader String username) {
+        return streamingMetrics.sse("rag-document", chatMemoryChatClient
+                .prompt()
+                .advisors(a -> a.param(CONVERSATION_ID, username))
+                .user(message)
+                .stream()
+                .content());
+    }
 }
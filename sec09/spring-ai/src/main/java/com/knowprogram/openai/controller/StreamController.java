@@ -1,5 +1,6 @@
 package com.knowprogram.openai.controller;
 
+import com.knowprogram.openai.advisors.TokenUsageAuditAdvisor;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.openai.OpenAiChatOptions;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -20,9 +21,9 @@ public class StreamController {
 
     @GetMapping("/stream")
     public Flux<String> stream(@RequestParam String message) {
-        return chatClient
+        return TokenUsageAuditAdvisor.withRequestEndpoint(chatClient
                 .prompt()
                 .user(message)
-                .stream().content();
+                .stream().content());
     }
 }
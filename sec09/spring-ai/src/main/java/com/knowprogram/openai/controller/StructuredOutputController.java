@@ -1,5 +1,6 @@
 package com.knowprogram.openai.controller;
 
+import com.knowprogram.openai.advisors.PromptCacheAdvisor;
 import com.knowprogram.openai.model.CountryCities;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.client.advisor.SimpleLoggerAdvisor;
@@ -22,9 +23,9 @@ public class StructuredOutputController {
 
     private final ChatClient chatClient;
 
-    public StructuredOutputController(ChatClient.Builder chatClientBuilder) {
+    public StructuredOutputController(ChatClient.Builder chatClientBuilder, PromptCacheAdvisor promptCacheAdvisor) {
         this.chatClient = chatClientBuilder
-                .defaultAdvisors(new SimpleLoggerAdvisor())
+                .defaultAdvisors(promptCacheAdvisor, new SimpleLoggerAdvisor())
                 .build();
     }
 
@@ -60,6 +61,7 @@ public class StructuredOutputController {
         List<CountryCities> countryCities = chatClient
                 .prompt()
                 .user(message)
+                .advisors(a -> a.param(PromptCacheAdvisor.ENABLED, true))
                 .call().entity(new ParameterizedTypeReference<List<CountryCities>>() {
                 });
         return ResponseEntity.ok(countryCities);
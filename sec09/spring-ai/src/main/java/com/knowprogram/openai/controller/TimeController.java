@@ -1,9 +1,13 @@
 package com.knowprogram.openai.controller;
 
+import com.knowprogram.openai.metrics.StreamingMetrics;
 import lombok.RequiredArgsConstructor;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 
 import static org.springframework.ai.chat.memory.ChatMemory.CONVERSATION_ID;
 
@@ -12,10 +16,16 @@ import static org.springframework.ai.chat.memory.ChatMemory.CONVERSATION_ID;
 @RequiredArgsConstructor
 public class TimeController {
     private final ChatClient timeChatClient;
+    private final StreamingMetrics streamingMetrics;
 
     @GetMapping("/local-time")
     public ResponseEntity<String> localTime(@RequestParam String message, @RequestHeader String username) {
         return ResponseEntity.ok(timeChatClient.prompt().advisors(a -> a.param(CONVERSATION_ID, username)).user(message).call().content());
     }
 
+    @GetMapping(value = "/local-time/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<String>> localTimeStream(@RequestParam String message, @RequestHeader String username) {
+        return streamingMetrics.sse("local-time", timeChatClient.prompt().advisors(a -> a.param(CONVERSATION_ID, username)).user(message).stream().content());
+    }
+
 }
@@ -0,0 +1,235 @@
+package com.knowprogram.openai.embedding;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.document.MetadataMode;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptions;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.embedding.EmbeddingResponseMetadata;
+import org.springframework.ai.retry.NonTransientAiException;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link EmbeddingModel} decorator that merges small concurrent requests into one upstream call.
+ * <p>
+ * Texts of requests smaller than {@code maxBatchSize} are queued. A dispatcher takes the first
+ * queued text, keeps collecting for up to {@code window} or until {@code maxBatchSize} texts are
+ * collected, and sends each group of texts with the same model and dimensions as a single request on
+ * a pool of {@code concurrency} threads. Callers block until their own vectors come back, for at
+ * most {@code timeout}. Larger requests, such as ingestion batches, go straight to the delegate.
+ * <p>
+ * A group rejected with a {@link NonTransientAiException}, which is how the provider rejects a bad
+ * input, is retried in halves so only the offending texts fail. Texts still queued when the bean
+ * is destroyed, or queued while it is being destroyed, are failed right away.
+ */
+public class BatchingEmbeddingModel implements EmbeddingModel, DisposableBean {
+    private static final Logger logger = LoggerFactory.getLogger(BatchingEmbeddingModel.class);
+
+    private final EmbeddingModel delegate;
+    private final long windowNanos;
+    private final long timeoutNanos;
+    private final int maxBatchSize;
+    private final BlockingQueue<Pending> queue;
+    private final ExecutorService dispatcher = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "embedding-batcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ExecutorService senders;
+    private final DistributionSummary batchSize;
+    private final Timer queueWait;
+    private volatile boolean running = true;
+
+    public BatchingEmbeddingModel(EmbeddingModel delegate, long windowMillis, long timeoutMillis, int maxBatchSize,
+                                  int queueCapacity, int concurrency, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        this.maxBatchSize = maxBatchSize;
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.senders = Executors.newFixedThreadPool(concurrency, r -> {
+            Thread thread = new Thread(r, "embedding-sender-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.batchSize = DistributionSummary.builder("embedding.batch.size")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.queueWait = Timer.builder("embedding.batch.queue.wait")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        dispatcher.execute(this::dispatchLoop);
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        List<String> texts = request.getInstructions();
+        if (texts.size() >= maxBatchSize || !running) {
+            return delegate.call(request);
+        }
+        List<CompletableFuture<float[]>> futures = new ArrayList<>(texts.size());
+        try {
+            for (String text : texts) {
+                Pending pending = new Pending(text, request.getOptions(), groupKey(request.getOptions()),
+                        new CompletableFuture<>(), System.nanoTime());
+                queue.put(pending);
+                futures.add(pending.future());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while queueing an embedding request", e);
+        }
+        if (!running) {
+            // destroy() may already have drained the queue for the last time
+            failQueued();
+        }
+        List<Embedding> embeddings = new ArrayList<>(texts.size());
+        long deadline = System.nanoTime() + timeoutNanos;
+        try {
+            for (int i = 0; i < futures.size(); i++) {
+                float[] vector = futures.get(i).get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                embeddings.add(new Embedding(vector, i));
+            }
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            futures.forEach(future -> future.cancel(false));
+            throw new IllegalStateException("Embedding request timed out after "
+                    + TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + " ms", e);
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(false));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for embeddings", e);
+        }
+        return new EmbeddingResponse(embeddings, new EmbeddingResponseMetadata());
+    }
+
+    private void dispatchLoop() {
+        List<Pending> batch = new ArrayList<>(maxBatchSize);
+        while (running) {
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + windowNanos;
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    Pending next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                send(List.copyOf(batch));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+        failQueued();
+    }
+
+    private void failQueued() {
+        List<Pending> leftover = new ArrayList<>();
+        queue.drainTo(leftover);
+        leftover.forEach(pending -> pending.future().completeExceptionally(
+                new IllegalStateException("Embedding batcher is shut down")));
+    }
+
+    private void send(List<Pending> batch) {
+        long now = System.nanoTime();
+        Map<String, List<Pending>> groups = new LinkedHashMap<>();
+        for (Pending pending : batch) {
+            queueWait.record(now - pending.enqueuedNanos(), TimeUnit.NANOSECONDS);
+            groups.computeIfAbsent(pending.groupKey(), key -> new ArrayList<>()).add(pending);
+        }
+        for (List<Pending> group : groups.values()) {
+            batchSize.record(group.size());
+            try {
+                senders.execute(() -> sendGroup(group));
+            } catch (RejectedExecutionException e) {
+                group.forEach(pending -> pending.future().completeExceptionally(e));
+            }
+        }
+    }
+
+    private void sendGroup(List<Pending> group) {
+        List<Pending> open = group.stream().filter(pending -> !pending.future().isDone()).toList();
+        if (open.isEmpty()) {
+            return;
+        }
+        try {
+            List<String> texts = open.stream().map(Pending::text).toList();
+            List<Embedding> results = delegate.call(new EmbeddingRequest(texts, open.get(0).options())).getResults();
+            for (int i = 0; i < open.size(); i++) {
+                open.get(i).future().complete(results.get(i).getOutput());
+            }
+        } catch (NonTransientAiException e) {
+            if (open.size() == 1) {
+                open.get(0).future().completeExceptionally(e);
+                return;
+            }
+            logger.debug("Embedding batch of {} texts was rejected, retrying it in halves", open.size(), e);
+            sendGroup(open.subList(0, open.size() / 2));
+            sendGroup(open.subList(open.size() / 2, open.size()));
+        } catch (RuntimeException e) {
+            logger.debug("Embedding batch of {} texts failed", open.size(), e);
+            open.forEach(pending -> pending.future().completeExceptionally(e));
+        }
+    }
+
+    private static String groupKey(EmbeddingOptions options) {
+        return options == null ? "" : options.getModel() + "|" + options.getDimensions();
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return embed(document.getFormattedContent(MetadataMode.EMBED));
+    }
+
+    @Override
+    public int dimensions() {
+        return delegate.dimensions();
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        running = false;
+        dispatcher.shutdown();
+        dispatcher.awaitTermination(5, TimeUnit.SECONDS);
+        failQueued();
+        senders.shutdown();
+        senders.awaitTermination(30, TimeUnit.SECONDS);
+    }
+
+    private record Pending(String text, EmbeddingOptions options, String groupKey,
+                           CompletableFuture<float[]> future, long enqueuedNanos) {
+    }
+}
@@ -0,0 +1,184 @@
+package com.knowprogram.openai.embedding;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.knowprogram.openai.cache.MappedResponseStore;
+import com.knowprogram.openai.cache.PromptFingerprint;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.document.MetadataMode;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptions;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.embedding.EmbeddingResponseMetadata;
+
+import java.nio.ByteBuffer;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * {@link EmbeddingModel} decorator that embeds each distinct text once.
+ * <p>
+ * Vectors are keyed by the SHA-256 of the model, the requested dimensions and the normalized text
+ * (NFC, trimmed, whitespace runs collapsed). Lookups go to an on-heap LRU first and then to a
+ * memory-mapped {@link MappedResponseStore} that survives restarts. Misses of one request are sent
+ * upstream in a single call; a text that another thread is already embedding is not requested
+ * again but waits for that thread's result.
+ */
+public class CachingEmbeddingModel implements EmbeddingModel {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final EmbeddingModel delegate;
+    private final String defaultModel;
+    private final MappedResponseStore store;
+    private final Cache<String, float[]> hot;
+    private final Map<String, CompletableFuture<float[]>> inFlight = new ConcurrentHashMap<>();
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter coalesced;
+
+    public CachingEmbeddingModel(EmbeddingModel delegate, String defaultModel, MappedResponseStore store,
+                                 long maximumSize, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.defaultModel = defaultModel;
+        this.store = store;
+        this.hot = Caffeine.newBuilder().maximumSize(maximumSize).build();
+        this.hits = Counter.builder("embedding.cache.requests").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("embedding.cache.requests").tag("result", "miss").register(meterRegistry);
+        this.coalesced = Counter.builder("embedding.cache.requests").tag("result", "coalesced").register(meterRegistry);
+        Gauge.builder("embedding.cache.size", store, MappedResponseStore::size).register(meterRegistry);
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        List<String> texts = request.getInstructions();
+        String scope = scope(request.getOptions());
+        float[][] vectors = new float[texts.size()][];
+        Map<String, CompletableFuture<float[]>> owned = new LinkedHashMap<>();
+        Map<String, String> ownedTexts = new LinkedHashMap<>();
+        Map<Integer, CompletableFuture<float[]>> waiting = new LinkedHashMap<>();
+        String[] keys = new String[texts.size()];
+
+        for (int i = 0; i < texts.size(); i++) {
+            String key = PromptFingerprint.sha256(scope, normalize(texts.get(i)));
+            keys[i] = key;
+            float[] cached = lookup(key);
+            if (cached != null) {
+                hits.increment();
+                vectors[i] = cached;
+                continue;
+            }
+            CompletableFuture<float[]> future = owned.get(key);
+            if (future == null) {
+                CompletableFuture<float[]> created = new CompletableFuture<>();
+                future = inFlight.putIfAbsent(key, created);
+                if (future == null) {
+                    future = created;
+                    owned.put(key, created);
+                    ownedTexts.put(key, texts.get(i));
+                    misses.increment();
+                } else {
+                    coalesced.increment();
+                }
+            }
+            waiting.put(i, future);
+        }
+
+        EmbeddingResponseMetadata metadata = new EmbeddingResponseMetadata();
+        if (!owned.isEmpty()) {
+            metadata = embedMisses(request.getOptions(), owned, ownedTexts);
+        }
+        try {
+            waiting.forEach((index, future) -> vectors[index] = future.join());
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+
+        List<Embedding> embeddings = new ArrayList<>(texts.size());
+        for (int i = 0; i < texts.size(); i++) {
+            embeddings.add(new Embedding(vectors[i], i));
+        }
+        return new EmbeddingResponse(embeddings, metadata);
+    }
+
+    private EmbeddingResponseMetadata embedMisses(EmbeddingOptions options, Map<String, CompletableFuture<float[]>> owned,
+                                                  Map<String, String> ownedTexts) {
+        List<String> keys = new ArrayList<>(ownedTexts.keySet());
+        try {
+            EmbeddingResponse response = delegate.call(new EmbeddingRequest(new ArrayList<>(ownedTexts.values()), options));
+            List<Embedding> results = response.getResults();
+            for (int i = 0; i < keys.size(); i++) {
+                String key = keys.get(i);
+                float[] vector = results.get(i).getOutput();
+                hot.put(key, vector);
+                store.put(HexFormat.of().parseHex(key), toBytes(vector));
+                owned.get(key).complete(vector);
+            }
+            return response.getMetadata();
+        } catch (RuntimeException e) {
+            owned.values().forEach(future -> future.completeExceptionally(e));
+            throw e;
+        } finally {
+            keys.forEach(inFlight::remove);
+        }
+    }
+
+    private float[] lookup(String key) {
+        float[] vector = hot.getIfPresent(key);
+        if (vector != null) {
+            return vector;
+        }
+        byte[] bytes = store.get(HexFormat.of().parseHex(key));
+        if (bytes == null) {
+            return null;
+        }
+        vector = toFloats(bytes);
+        hot.put(key, vector);
+        return vector;
+    }
+
+    private String scope(EmbeddingOptions options) {
+        String model = options != null && options.getModel() != null ? options.getModel() : defaultModel;
+        Integer dimensions = options != null ? options.getDimensions() : null;
+        return model + "|" + dimensions;
+    }
+
+    static String normalize(String text) {
+        return WHITESPACE.matcher(Normalizer.normalize(text, Normalizer.Form.NFC).strip()).replaceAll(" ");
+    }
+
+    private static byte[] toBytes(float[] vector) {
+        ByteBuffer buffer = ByteBuffer.allocate(vector.length * Float.BYTES);
+        buffer.asFloatBuffer().put(vector);
+        return buffer.array();
+    }
+
+    private static float[] toFloats(byte[] bytes) {
+        float[] vector = new float[bytes.length / Float.BYTES];
+        ByteBuffer.wrap(bytes).asFloatBuffer().get(vector);
+        return vector;
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return embed(document.getFormattedContent(MetadataMode.EMBED));
+    }
+
+    @Override
+    public int dimensions() {
+        return delegate.dimensions();
+    }
+}
@@ -6,7 +6,8 @@ import lombok.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "helpdesk_tickets")
+@Table(name = "helpdesk_tickets", indexes = @Index(name = "helpdesk_tickets_username_created_at_idx",
+        columnList = "username, created_at, id"))
 @Getter
 @Setter
 @Builder
@@ -21,6 +22,7 @@ public class HelpDeskTicket {
     private String username;
     private String issue;
     private String status;
+    @Column(name = "created_at")
     private LocalDateTime createdAt;
     private LocalDateTime eta;
 }
\ No newline at end of file
@@ -0,0 +1,188 @@
+package com.knowprogram.openai.memory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chat memory repository over the append-only {@code SPRING_AI_CHAT_MEMORY_LOG} table.
+ * <p>
+ * Chat memories always hand over the whole window. Instead of deleting and re-inserting it, this
+ * repository inserts only the messages {@link #append} is told are new, each with the next
+ * per-conversation sequence number, plus the token count {@link TokenBudgetChatMemory} cached in the
+ * message metadata. Reads fetch the newest {@code windowSize} rows.
+ * Rows that have fallen out of the window are removed by a periodic compaction; {@link #replace}
+ * rewrites a conversation that has to shrink. Tool results are not stored, as the table only keeps
+ * the text of a message.
+ */
+public class AppendOnlyChatMemoryRepository implements AppendingChatMemoryRepository, DisposableBean {
+    private static final Logger logger = LoggerFactory.getLogger(AppendOnlyChatMemoryRepository.class);
+
+    private static final String SELECT_LAST_N_SQL = """
+            SELECT seq, content, type, token_count FROM SPRING_AI_CHAT_MEMORY_LOG
+            WHERE conversation_id = ? ORDER BY seq DESC LIMIT ?""";
+    private static final String INSERT_SQL = """
+            INSERT INTO SPRING_AI_CHAT_MEMORY_LOG (conversation_id, seq, content, type, token_count) VALUES (?, ?, ?, ?, ?)""";
+    private static final String SELECT_LAST_SEQ_SQL = """
+            SELECT COALESCE(MAX(seq), 0) FROM SPRING_AI_CHAT_MEMORY_LOG WHERE conversation_id = ?""";
+    private static final String SELECT_CONVERSATION_IDS_SQL = "SELECT DISTINCT conversation_id FROM SPRING_AI_CHAT_MEMORY_LOG";
+    private static final String DELETE_SQL = "DELETE FROM SPRING_AI_CHAT_MEMORY_LOG WHERE conversation_id = ?";
+    private static final String COMPACT_SQL = """
+            DELETE FROM SPRING_AI_CHAT_MEMORY_LOG l
+            WHERE l.seq <= (SELECT MAX(m.seq) FROM SPRING_AI_CHAT_MEMORY_LOG m WHERE m.conversation_id = l.conversation_id) - ?""";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int windowSize;
+    private final Map<String, Long> lastSeqs;
+    private final ScheduledExecutorService compactor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "chat-memory-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public AppendOnlyChatMemoryRepository(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                          int windowSize, int maxCachedTails, long compactionIntervalMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.windowSize = windowSize;
+        this.lastSeqs = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > maxCachedTails;
+            }
+        });
+        compactor.scheduleWithFixedDelay(this::compact, compactionIntervalMillis, compactionIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public List<String> findConversationIds() {
+        return jdbcTemplate.queryForList(SELECT_CONVERSATION_IDS_SQL, String.class);
+    }
+
+    @Override
+    public List<Message> findByConversationId(String conversationId) {
+        List<Row> newestFirst = jdbcTemplate.query(SELECT_LAST_N_SQL,
+                (rs, rowNum) -> new Row(rs.getLong("seq"), toMessage(rs)), conversationId, windowSize);
+        List<Message> messages = new ArrayList<>(newestFirst.size());
+        for (int i = newestFirst.size() - 1; i >= 0; i--) {
+            messages.add(newestFirst.get(i).message());
+        }
+        lastSeqs.put(conversationId, newestFirst.isEmpty() ? 0 : newestFirst.get(0).seq());
+        return messages;
+    }
+
+    @Override
+    public void saveAll(String conversationId, List<Message> messages) {
+        replace(conversationId, messages);
+    }
+
+    @Override
+    public void appendAll(Map<String, Appended> windowsByConversationId) {
+        List<Object[]> rows = new ArrayList<>();
+        Map<String, Long> updated = new LinkedHashMap<>();
+        windowsByConversationId.forEach((conversationId, appended) -> {
+            List<Message> window = appended.window();
+            int added = Math.min(appended.added(), window.size());
+            updated.put(conversationId, append(conversationId, window.subList(window.size() - added, window.size()),
+                    lastSeq(conversationId), rows));
+        });
+        if (!rows.isEmpty()) {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(INSERT_SQL, rows));
+        }
+        lastSeqs.putAll(updated);
+    }
+
+    @Override
+    public void replace(String conversationId, List<Message> messages) {
+        List<Object[]> rows = new ArrayList<>();
+        long seq = append(conversationId, messages, lastSeq(conversationId), rows);
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update(DELETE_SQL, conversationId);
+            if (!rows.isEmpty()) {
+                jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+            }
+        });
+        lastSeqs.put(conversationId, seq);
+    }
+
+    @Override
+    public void deleteByConversationId(String conversationId) {
+        jdbcTemplate.update(DELETE_SQL, conversationId);
+        lastSeqs.remove(conversationId);
+    }
+
+    public void compact() {
+        try {
+            int deleted = jdbcTemplate.update(COMPACT_SQL, windowSize);
+            logger.debug("Compacted {} chat memory rows", deleted);
+        } catch (RuntimeException e) {
+            logger.warn("Chat memory compaction failed", e);
+        }
+    }
+
+    private long lastSeq(String conversationId) {
+        Long lastSeq = lastSeqs.get(conversationId);
+        return lastSeq != null ? lastSeq : jdbcTemplate.queryForObject(SELECT_LAST_SEQ_SQL, Long.class, conversationId);
+    }
+
+    /**
+     * Adds an insert row for each of {@code messages} but tool results, numbered after {@code lastSeq},
+     * and returns the last sequence number used.
+     */
+    private static long append(String conversationId, List<Message> messages, long lastSeq, List<Object[]> rows) {
+        long seq = lastSeq;
+        for (Message message : messages) {
+            if (message.getMessageType() == MessageType.TOOL) {
+                continue;
+            }
+            rows.add(new Object[]{conversationId, ++seq, Objects.toString(message.getText(), ""),
+                    message.getMessageType().name(), message.getMetadata().get(TokenBudgetChatMemory.TOKEN_COUNT)});
+        }
+        return seq;
+    }
+
+    private static Message toMessage(ResultSet rs) throws SQLException {
+        String content = rs.getString("content");
+        Map<String, Object> metadata = new HashMap<>();
+        int tokenCount = rs.getInt("token_count");
+        if (!rs.wasNull()) {
+            metadata.put(TokenBudgetChatMemory.TOKEN_COUNT, tokenCount);
+        }
+        return switch (MessageType.valueOf(rs.getString("type"))) {
+            case USER -> UserMessage.builder().text(content).metadata(metadata).build();
+            case ASSISTANT -> new AssistantMessage(content, metadata);
+            case SYSTEM -> SystemMessage.builder().text(content).metadata(metadata).build();
+            case TOOL -> throw new IllegalStateException("Tool results are not stored");
+        };
+    }
+
+    @Override
+    public void destroy() {
+        compactor.shutdownNow();
+    }
+
+    private record Row(long seq, Message message) {
+    }
+}
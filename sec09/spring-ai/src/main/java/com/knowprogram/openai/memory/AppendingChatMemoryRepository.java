@@ -0,0 +1,36 @@
+package com.knowprogram.openai.memory;
+
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
+import org.springframework.ai.chat.messages.Message;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link ChatMemoryRepository} that stores only the messages a window adds, so messages dropped
+ * from the start of a window stay stored until they fall out of it by age. The caller says how many
+ * messages are new; {@code saveAll} stores the whole window like {@link #replace}.
+ */
+public interface AppendingChatMemoryRepository extends ChatMemoryRepository {
+
+    /**
+     * A window whose last {@code added} messages are not stored yet.
+     */
+    record Appended(List<Message> window, int added) {
+    }
+
+    /**
+     * Stores the new messages of several conversations in one go.
+     */
+    void appendAll(Map<String, Appended> windowsByConversationId);
+
+    default void append(String conversationId, List<Message> window, int added) {
+        appendAll(Map.of(conversationId, new Appended(window, added)));
+    }
+
+    /**
+     * Stores {@code messages} as the whole window of the conversation, dropping every message stored
+     * before, in one transaction.
+     */
+    void replace(String conversationId, List<Message> messages);
+}
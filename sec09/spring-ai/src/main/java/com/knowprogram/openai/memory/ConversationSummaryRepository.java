@@ -0,0 +1,68 @@
+package com.knowprogram.openai.memory;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Versioned rolling summaries of conversations in the {@code SPRING_AI_CHAT_MEMORY_SUMMARY} table.
+ * Every fold writes a new version; the latest version of active conversations is cached so reading
+ * it on each turn does not hit the database.
+ */
+public class ConversationSummaryRepository {
+
+    private static final String SELECT_LATEST_SQL = """
+            SELECT version, content FROM SPRING_AI_CHAT_MEMORY_SUMMARY
+            WHERE conversation_id = ? ORDER BY version DESC LIMIT 1""";
+    private static final String INSERT_SQL = """
+            INSERT INTO SPRING_AI_CHAT_MEMORY_SUMMARY (conversation_id, version, content) VALUES (?, ?, ?)""";
+    private static final String DELETE_OLD_VERSIONS_SQL = """
+            DELETE FROM SPRING_AI_CHAT_MEMORY_SUMMARY WHERE conversation_id = ? AND version <= ?""";
+    private static final String DELETE_SQL = "DELETE FROM SPRING_AI_CHAT_MEMORY_SUMMARY WHERE conversation_id = ?";
+
+    public record Summary(int version, String content) {
+        public static final Summary NONE = new Summary(0, "");
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int keepVersions;
+    private final Cache<String, Summary> latest;
+
+    public ConversationSummaryRepository(JdbcTemplate jdbcTemplate, int keepVersions, long maximumSize,
+                                         Duration expireAfterAccess) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.keepVersions = keepVersions;
+        this.latest = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterAccess(expireAfterAccess)
+                .build();
+    }
+
+    public Summary findLatest(String conversationId) {
+        return latest.get(conversationId, id -> {
+            List<Summary> rows = jdbcTemplate.query(SELECT_LATEST_SQL,
+                    (rs, rowNum) -> new Summary(rs.getInt("version"), rs.getString("content")), id);
+            return rows.isEmpty() ? Summary.NONE : rows.get(0);
+        });
+    }
+
+    /**
+     * Stores {@code content} as the version after {@code previous}. Fails on the unique index if
+     * another writer stored that version first.
+     */
+    public Summary save(String conversationId, Summary previous, String content) {
+        Summary summary = new Summary(previous.version() + 1, content);
+        jdbcTemplate.update(INSERT_SQL, conversationId, summary.version(), content);
+        jdbcTemplate.update(DELETE_OLD_VERSIONS_SQL, conversationId, summary.version() - keepVersions);
+        latest.put(conversationId, summary);
+        return summary;
+    }
+
+    public void deleteByConversationId(String conversationId) {
+        jdbcTemplate.update(DELETE_SQL, conversationId);
+        latest.invalidate(conversationId);
+    }
+}
@@ -0,0 +1,154 @@
+package com.knowprogram.openai.memory;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
+import org.springframework.ai.chat.messages.Message;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.UnaryOperator;
+
+/**
+ * Keeps the windows of active conversations in a size- and time-bounded Caffeine cache in front of
+ * a cold {@link ChatMemoryRepository}. Reads are always read-through; {@link Mode} decides what a
+ * write does to the hot tier.
+ * <p>
+ * Writes to the same conversation are serialized by a striped lock. {@link #append} and
+ * {@link #replace} read the window and write the new one under that lock, so a turn added by a
+ * request cannot be lost to, or undo, a background rewrite of the window.
+ */
+public class TieredChatMemoryRepository implements ChatMemoryRepository {
+
+    private static final int LOCK_STRIPES = 64;
+
+    public enum Mode {
+        /**
+         * Writes go to the cold tier and evict the hot entry, so the next read reloads it.
+         */
+        READ_THROUGH,
+        /**
+         * Writes go to the cold tier and then replace the hot entry.
+         */
+        WRITE_THROUGH,
+        /**
+         * Writes replace the hot entry and are handed to an asynchronous cold tier such as
+         * {@link WriteBehindChatMemoryRepository}.
+         */
+        WRITE_BEHIND
+    }
+
+    private final ChatMemoryRepository cold;
+    private final Mode mode;
+    private final Cache<String, List<Message>> hot;
+    private final Lock[] locks = new Lock[LOCK_STRIPES];
+
+    public TieredChatMemoryRepository(ChatMemoryRepository cold, Mode mode, long maximumSize,
+                                      Duration expireAfterAccess, MeterRegistry meterRegistry) {
+        this.cold = cold;
+        this.mode = mode;
+        this.hot = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterAccess(expireAfterAccess)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, hot, "chat-memory");
+        Gauge.builder("chat.memory.cache.hit.ratio", hot, cache -> cache.stats().hitRate()).register(meterRegistry);
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    @Override
+    public List<String> findConversationIds() {
+        return cold.findConversationIds();
+    }
+
+    @Override
+    public List<Message> findByConversationId(String conversationId) {
+        return hot.get(conversationId, id -> List.copyOf(cold.findByConversationId(id)));
+    }
+
+    @Override
+    public void saveAll(String conversationId, List<Message> messages) {
+        List<Message> window = List.copyOf(messages);
+        locked(conversationId, () -> write(conversationId, window, () -> cold.saveAll(conversationId, window)));
+    }
+
+    /**
+     * Saves {@code update} applied to the current window, which adds {@code added} messages at its
+     * end. An {@link AppendingChatMemoryRepository} cold tier only stores those.
+     */
+    public void append(String conversationId, int added, UnaryOperator<List<Message>> update) {
+        locked(conversationId, () -> {
+            List<Message> window = List.copyOf(update.apply(findByConversationId(conversationId)));
+            write(conversationId, window, () -> {
+                if (cold instanceof AppendingChatMemoryRepository appendingRepository) {
+                    appendingRepository.append(conversationId, window, added);
+                } else {
+                    cold.saveAll(conversationId, window);
+                }
+            });
+        });
+    }
+
+    /**
+     * Saves {@code update} applied to the current window as a new window that may drop messages from
+     * the current one. The window is left as is if {@code update} returns {@code null}.
+     */
+    public void replace(String conversationId, UnaryOperator<List<Message>> update) {
+        locked(conversationId, () -> {
+            List<Message> updated = update.apply(findByConversationId(conversationId));
+            if (updated != null) {
+                List<Message> window = List.copyOf(updated);
+                write(conversationId, window, () -> {
+                    if (cold instanceof AppendingChatMemoryRepository appendingRepository) {
+                        appendingRepository.replace(conversationId, window);
+                    } else {
+                        cold.saveAll(conversationId, window);
+                    }
+                });
+            }
+        });
+    }
+
+    @Override
+    public void deleteByConversationId(String conversationId) {
+        locked(conversationId, () -> {
+            hot.invalidate(conversationId);
+            cold.deleteByConversationId(conversationId);
+        });
+    }
+
+    private void write(String conversationId, List<Message> window, Runnable writeCold) {
+        switch (mode) {
+            case READ_THROUGH -> {
+                writeCold.run();
+                hot.invalidate(conversationId);
+            }
+            case WRITE_THROUGH -> {
+                writeCold.run();
+                hot.put(conversationId, window);
+            }
+            case WRITE_BEHIND -> {
+                hot.put(conversationId, window);
+                writeCold.run();
+            }
+        }
+    }
+
+    private void locked(String conversationId, Runnable write) {
+        Lock lock = locks[Math.floorMod(conversationId.hashCode(), locks.length)];
+        lock.lock();
+        try {
+            write.run();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
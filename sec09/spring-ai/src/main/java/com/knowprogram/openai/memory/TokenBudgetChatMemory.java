@@ -0,0 +1,164 @@
+package com.knowprogram.openai.memory;
+
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link ChatMemory} that hands the model as much recent history as fits a token budget instead of a
+ * fixed number of messages.
+ * <p>
+ * Each message is tokenized once, when it is added, and the count travels with it in the
+ * {@link #TOKEN_COUNT} metadata entry, which {@link AppendOnlyChatMemoryRepository} stores next to
+ * the row. Trimming is then a walk over cached integers. Several memories with different budgets can
+ * share one repository: the repository keeps the newest {@code maxMessages} and every memory trims
+ * to its own budget on {@link #get(String)}.
+ */
+public class TokenBudgetChatMemory implements ChatMemory {
+
+    public static final String TOKEN_COUNT = "token_count";
+
+    // role and separator tokens the chat format adds around every message
+    private static final int MESSAGE_OVERHEAD = 4;
+
+    private final ChatMemoryRepository chatMemoryRepository;
+    private final TokenCountEstimator tokenCountEstimator;
+    private final int tokenBudget;
+    private final int maxMessages;
+
+    public TokenBudgetChatMemory(ChatMemoryRepository chatMemoryRepository, TokenCountEstimator tokenCountEstimator,
+                                 int tokenBudget, int maxMessages) {
+        this.chatMemoryRepository = chatMemoryRepository;
+        this.tokenCountEstimator = tokenCountEstimator;
+        this.tokenBudget = tokenBudget;
+        this.maxMessages = maxMessages;
+    }
+
+    /**
+     * Appends {@code messages} to the window. A new system message takes the place of the stored one,
+     * so the window is then saved as a whole.
+     */
+    @Override
+    public void add(String conversationId, List<Message> messages) {
+        boolean newSystemMessage = messages.stream().anyMatch(SystemMessage.class::isInstance);
+        if (chatMemoryRepository instanceof TieredChatMemoryRepository tieredRepository) {
+            if (newSystemMessage) {
+                tieredRepository.replace(conversationId, window -> append(window, messages, true));
+            } else {
+                tieredRepository.append(conversationId, messages.size(), window -> append(window, messages, false));
+            }
+            return;
+        }
+        List<Message> window = append(chatMemoryRepository.findByConversationId(conversationId), messages,
+                newSystemMessage);
+        if (!newSystemMessage && chatMemoryRepository instanceof AppendingChatMemoryRepository appendingRepository) {
+            appendingRepository.append(conversationId, window, messages.size());
+        } else {
+            chatMemoryRepository.saveAll(conversationId, window);
+        }
+    }
+
+    private List<Message> append(List<Message> stored, List<Message> messages, boolean newSystemMessage) {
+        List<Message> window = new ArrayList<>();
+        for (Message message : stored) {
+            if (!(newSystemMessage && message instanceof SystemMessage)) {
+                window.add(message);
+            }
+        }
+        for (Message message : messages) {
+            window.add(withTokenCount(message));
+        }
+        if (window.size() > maxMessages) {
+            window = new ArrayList<>(window.subList(window.size() - maxMessages, window.size()));
+        }
+        return window;
+    }
+
+    @Override
+    public List<Message> get(String conversationId) {
+        List<Message> window = chatMemoryRepository.findByConversationId(conversationId);
+        int total = 0;
+        for (Message message : window) {
+            if (message instanceof SystemMessage) {
+                total += tokenCount(message);
+            }
+        }
+        // walk from the newest message back and keep whatever still fits
+        int start = window.size();
+        for (int i = window.size() - 1; i >= 0; i--) {
+            Message message = window.get(i);
+            if (message instanceof SystemMessage) {
+                continue;
+            }
+            int tokens = tokenCount(message);
+            if (total + tokens > tokenBudget) {
+                break;
+            }
+            total += tokens;
+            start = i;
+        }
+        // a tool result is meaningless without the assistant message that requested it
+        while (start < window.size() && window.get(start).getMessageType() == MessageType.TOOL) {
+            start++;
+        }
+        List<Message> result = new ArrayList<>();
+        for (int i = 0; i < window.size(); i++) {
+            Message message = window.get(i);
+            if (message instanceof SystemMessage || i >= start) {
+                result.add(message);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void clear(String conversationId) {
+        chatMemoryRepository.deleteByConversationId(conversationId);
+    }
+
+    private int tokenCount(Message message) {
+        Object cached = message.getMetadata().get(TOKEN_COUNT);
+        if (cached instanceof Number number) {
+            return number.intValue();
+        }
+        return count(message);
+    }
+
+    private int count(Message message) {
+        String text = message.getText();
+        return MESSAGE_OVERHEAD + (text == null ? 0 : tokenCountEstimator.estimate(text));
+    }
+
+    private Message withTokenCount(Message message) {
+        if (message.getMetadata().get(TOKEN_COUNT) instanceof Number) {
+            return message;
+        }
+        Map<String, Object> metadata = new HashMap<>(message.getMetadata());
+        metadata.put(TOKEN_COUNT, count(message));
+        if (message instanceof UserMessage userMessage) {
+            return userMessage.mutate().metadata(metadata).build();
+        }
+        if (message instanceof AssistantMessage assistantMessage) {
+            return new AssistantMessage(assistantMessage.getText(), metadata, assistantMessage.getToolCalls(),
+                    assistantMessage.getMedia());
+        }
+        if (message instanceof SystemMessage systemMessage) {
+            return SystemMessage.builder().text(systemMessage.getText()).metadata(metadata).build();
+        }
+        if (message instanceof ToolResponseMessage toolResponseMessage) {
+            return new ToolResponseMessage(toolResponseMessage.getResponses(), metadata);
+        }
+        return message;
+    }
+}
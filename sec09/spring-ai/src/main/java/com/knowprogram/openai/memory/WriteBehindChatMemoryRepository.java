@@ -0,0 +1,281 @@
+package com.knowprogram.openai.memory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
+import org.springframework.ai.chat.memory.repository.jdbc.JdbcChatMemoryRepositoryDialect;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link ChatMemoryRepository} that takes chat memory writes off the request thread.
+ * <p>
+ * A write only records the latest window of a conversation and queues the conversation id.
+ * A background thread drains the queue and writes whole batches of conversations with one JDBC
+ * batch delete and one batch insert, so several turns of the same conversation between two flushes
+ * collapse into a single write. A window stays pending until its write commits, so reads are
+ * answered from it before falling back to the delegate; hot windows are cached in front of this
+ * repository by {@link TieredChatMemoryRepository}. A batch that fails to write is retried after
+ * {@code flushIntervalMillis}. When the queue is full, a write blocks until the writer
+ * catches up, even when interrupted, so every write is made by the writer thread in queue order;
+ * pending windows are flushed when the bean is destroyed.
+ * <p>
+ * An {@link AppendingChatMemoryRepository} delegate is handed, in one batch, the messages each
+ * window added since the conversation was last written; any other delegate is written with the
+ * delete-and-insert statements of the Spring AI JDBC dialect. A {@link #replace} and a
+ * {@link #deleteByConversationId} are queued like any other write, so they cannot overtake or be
+ * overtaken by an earlier window of the same conversation.
+ */
+public class WriteBehindChatMemoryRepository implements AppendingChatMemoryRepository, DisposableBean {
+    private static final Logger logger = LoggerFactory.getLogger(WriteBehindChatMemoryRepository.class);
+
+    private final ChatMemoryRepository delegate;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final JdbcChatMemoryRepositoryDialect dialect;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+    private final BlockingQueue<String> dirty;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "chat-memory-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile boolean running = true;
+
+    public WriteBehindChatMemoryRepository(ChatMemoryRepository delegate, JdbcTemplate jdbcTemplate,
+                                           PlatformTransactionManager transactionManager, int queueCapacity,
+                                           int batchSize, long flushIntervalMillis) {
+        this.delegate = delegate;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.dialect = JdbcChatMemoryRepositoryDialect.from(jdbcTemplate.getDataSource());
+        this.batchSize = batchSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.dirty = new ArrayBlockingQueue<>(queueCapacity);
+        writer.execute(this::drainLoop);
+    }
+
+    @Override
+    public List<String> findConversationIds() {
+        Set<String> ids = new LinkedHashSet<>(delegate.findConversationIds());
+        pending.forEach((conversationId, window) -> {
+            if (window.write() == Write.DELETE) {
+                ids.remove(conversationId);
+            } else {
+                ids.add(conversationId);
+            }
+        });
+        return new ArrayList<>(ids);
+    }
+
+    @Override
+    public List<Message> findByConversationId(String conversationId) {
+        Pending window = pending.get(conversationId);
+        // a pending delete holds an empty window
+        return window != null ? window.messages() : delegate.findByConversationId(conversationId);
+    }
+
+    @Override
+    public void saveAll(String conversationId, List<Message> messages) {
+        replace(conversationId, messages);
+    }
+
+    @Override
+    public void appendAll(Map<String, Appended> windowsByConversationId) {
+        windowsByConversationId.forEach((conversationId, appended) ->
+                enqueue(conversationId, new Pending(List.copyOf(appended.window()), Write.APPEND, appended.added())));
+    }
+
+    @Override
+    public void replace(String conversationId, List<Message> messages) {
+        enqueue(conversationId, new Pending(List.copyOf(messages), Write.REPLACE, 0));
+    }
+
+    @Override
+    public void deleteByConversationId(String conversationId) {
+        enqueue(conversationId, new Pending(List.of(), Write.DELETE, 0));
+    }
+
+    private void enqueue(String conversationId, Pending write) {
+        boolean[] queued = {true};
+        pending.compute(conversationId, (id, previous) -> {
+            queued[0] = previous != null;
+            if (previous == null || write.write() != Write.APPEND) {
+                return write;
+            }
+            // appended on top of a pending replace or delete, the window still has to drop the stored one
+            return previous.write() == Write.APPEND
+                    ? new Pending(write.messages(), Write.APPEND,
+                    Math.min(previous.added() + write.added(), write.messages().size()))
+                    : new Pending(write.messages(), Write.REPLACE, 0);
+        });
+        if (!queued[0]) {
+            putUninterruptibly(conversationId);
+        }
+    }
+
+    /**
+     * Queues {@code conversationId} even if the caller is interrupted, as only the writer thread may
+     * flush a window: a flush on the caller could race one of the writer's and store an older window
+     * last. The interrupt is restored once the id is queued.
+     */
+    private void putUninterruptibly(String conversationId) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    dirty.put(conversationId);
+                    return;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Writes batches of queued conversations. Conversations that were written again while their
+     * batch was being written, and whole batches that failed, are carried over to the next batch:
+     * they are pending but no longer queued.
+     */
+    private void drainLoop() {
+        List<String> batch = new ArrayList<>(batchSize);
+        Set<String> carried = new LinkedHashSet<>();
+        while (running || !dirty.isEmpty() || !carried.isEmpty()) {
+            try {
+                batch.addAll(carried);
+                carried.clear();
+                if (batch.isEmpty()) {
+                    String first = dirty.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                }
+                dirty.drainTo(batch, Math.max(0, batchSize - batch.size()));
+                flush(batch, carried);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                carried.addAll(batch);
+                logger.error("Failed to flush chat memory for conversations {}, retrying", batch, e);
+                try {
+                    Thread.sleep(flushIntervalMillis);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<String> conversationIds, Set<String> carried) {
+        Map<String, Pending> windows = new LinkedHashMap<>();
+        for (String conversationId : conversationIds) {
+            Pending window = pending.get(conversationId);
+            if (window != null) {
+                windows.put(conversationId, window);
+            }
+        }
+        Map<String, Appended> appended = new LinkedHashMap<>();
+        Map<String, List<Message>> snapshot = new LinkedHashMap<>();
+        for (Map.Entry<String, Pending> entry : windows.entrySet()) {
+            String conversationId = entry.getKey();
+            Pending window = entry.getValue();
+            if (window.write() == Write.DELETE) {
+                delegate.deleteByConversationId(conversationId);
+                written(conversationId, window, carried);
+            } else if (!(delegate instanceof AppendingChatMemoryRepository appendingRepository)) {
+                snapshot.put(conversationId, window.messages());
+            } else if (window.write() == Write.REPLACE) {
+                appendingRepository.replace(conversationId, window.messages());
+                written(conversationId, window, carried);
+            } else {
+                appended.put(conversationId, new Appended(window.messages(), window.added()));
+            }
+        }
+        if (!appended.isEmpty()) {
+            ((AppendingChatMemoryRepository) delegate).appendAll(appended);
+            appended.keySet().forEach(conversationId -> written(conversationId, windows.get(conversationId), carried));
+        }
+        if (!snapshot.isEmpty()) {
+            write(snapshot);
+            snapshot.keySet().forEach(conversationId -> written(conversationId, windows.get(conversationId), carried));
+        }
+    }
+
+    /**
+     * Drops {@code window} from the pending writes once it is stored, unless a newer write of the
+     * conversation replaced it meanwhile; that one was not queued, as the conversation was pending.
+     */
+    private void written(String conversationId, Pending window, Set<String> carried) {
+        if (!pending.remove(conversationId, window)) {
+            carried.add(conversationId);
+        }
+    }
+
+    private void write(Map<String, List<Message>> snapshot) {
+        List<Object[]> deletes = new ArrayList<>();
+        List<Object[]> inserts = new ArrayList<>();
+        AtomicLong timestamp = new AtomicLong(Instant.now().toEpochMilli());
+        snapshot.forEach((conversationId, window) -> {
+            deletes.add(new Object[]{conversationId});
+            for (Message message : window) {
+                inserts.add(new Object[]{conversationId, message.getText(), message.getMessageType().name(),
+                        new Timestamp(timestamp.getAndIncrement())});
+            }
+        });
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate(dialect.getDeleteMessagesSql(), deletes);
+            jdbcTemplate.batchUpdate(dialect.getInsertMessageSql(), inserts);
+        });
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        running = false;
+        writer.shutdown();
+        if (!writer.awaitTermination(30, TimeUnit.SECONDS)) {
+            logger.warn("Chat memory writer did not finish in time, {} conversations pending", pending.size());
+        }
+    }
+
+    private enum Write {
+        APPEND, REPLACE, DELETE
+    }
+
+    /**
+     * A window to write; an append only stores its last {@code added} messages.
+     */
+    private record Pending(List<Message> messages, Write write, int added) {
+    }
+}
@@ -0,0 +1,49 @@
+package com.knowprogram.openai.metrics;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.knowprogram.openai.advisors.TokenUsageAuditAdvisor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+@Component
+@RequiredArgsConstructor
+public class StreamingMetrics {
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Wraps streamed content as server-sent events and records the time to first token and the
+     * total stream duration under the given endpoint tag. The request mapping is passed on for the
+     * {@link TokenUsageAuditAdvisor}.
+     * <p>
+     * Each event carries its token as a JSON string ({@code data:" world"}), since SSE clients
+     * strip the space after {@code data:} and would glue the words of a raw token stream together.
+     */
+    public Flux<ServerSentEvent<String>> sse(String endpoint, Flux<String> content) {
+        Timer firstToken = Timer.builder("chat.stream.time.to.first.token").tag("endpoint", endpoint).register(meterRegistry);
+        Timer duration = Timer.builder("chat.stream.duration").tag("endpoint", endpoint).register(meterRegistry);
+        Flux<String> audited = TokenUsageAuditAdvisor.withRequestEndpoint(content);
+        return Flux.defer(() -> {
+            long start = System.nanoTime();
+            AtomicBoolean first = new AtomicBoolean(true);
+            return audited
+                    .doOnNext(token -> {
+                        if (first.compareAndSet(true, false)) {
+                            firstToken.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                        }
+                    })
+                    .doOnComplete(() -> duration.record(System.nanoTime() - start, TimeUnit.NANOSECONDS))
+                    .map(token -> ServerSentEvent.builder(json(token)).build());
+        });
+    }
+
+    private static String json(String token) {
+        return '"' + new String(JsonStringEncoder.getInstance().quoteAsString(token)) + '"';
+    }
+}
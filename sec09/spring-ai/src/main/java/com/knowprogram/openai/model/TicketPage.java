@@ -0,0 +1,6 @@
+package com.knowprogram.openai.model;
+
+import java.util.List;
+
+public record TicketPage(List<TicketSummary> tickets, String nextCursor) {
+}
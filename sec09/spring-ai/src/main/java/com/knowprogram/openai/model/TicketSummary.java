@@ -0,0 +1,6 @@
+package com.knowprogram.openai.model;
+
+import java.time.LocalDateTime;
+
+public record TicketSummary(Long id, String issue, String status, LocalDateTime createdAt, LocalDateTime eta) {
+}
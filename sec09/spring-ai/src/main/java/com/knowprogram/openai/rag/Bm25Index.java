@@ -0,0 +1,226 @@
+package com.knowprogram.openai.rag;
+
+import org.springframework.ai.document.Document;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index ranking chunks with Okapi BM25, for exact-term matches that embeddings
+ * tend to miss ("notice period", "paternity").
+ * <p>
+ * The index is filled by the {@link IngestionPipeline} for every chunk it sees, including the ones
+ * already in the vector store, so it is rebuilt from the source on each start without embedding
+ * anything. Adding a known id again only replaces its metadata, as the id fixes the text.
+ * <p>
+ * Removed chunks stay in the postings as tombstones that searches skip, but do not count towards
+ * document frequencies; once they make up {@link #COMPACT_RATIO} of the index, the postings are
+ * rewritten without them.
+ */
+public class Bm25Index {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final double COMPACT_RATIO = 0.25;
+    private static final Set<String> STOP_WORDS = Set.of("a", "an", "and", "are", "as", "at", "be", "by", "for",
+            "from", "how", "i", "in", "is", "it", "many", "much", "my", "of", "on", "or", "the", "to", "what", "when",
+            "where", "which", "who", "with");
+
+    public record Hit(Document document, double score) {
+    }
+
+    private record Posting(int doc, int frequency) {
+    }
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, List<Posting>> postings = new HashMap<>();
+    private final Map<String, Integer> documentFrequencies = new HashMap<>();
+    private final Map<String, Integer> docsById = new HashMap<>();
+    private final List<Document> documents = new ArrayList<>();
+    private final List<Integer> lengths = new ArrayList<>();
+    private final BitSet removed = new BitSet();
+    private long totalLength;
+
+    public void add(Collection<Document> chunks) {
+        lock.writeLock().lock();
+        try {
+            for (Document chunk : chunks) {
+                Integer existing = docsById.get(chunk.getId());
+                if (existing != null) {
+                    documents.set(existing, chunk);
+                    continue;
+                }
+                int doc = documents.size();
+                List<String> terms = tokenize(chunk.getText());
+                Map<String, Integer> frequencies = new HashMap<>();
+                for (String term : terms) {
+                    frequencies.merge(term, 1, Integer::sum);
+                }
+                frequencies.forEach((term, frequency) -> {
+                    postings.computeIfAbsent(term, key -> new ArrayList<>()).add(new Posting(doc, frequency));
+                    documentFrequencies.merge(term, 1, Integer::sum);
+                });
+                documents.add(chunk);
+                lengths.add(terms.size());
+                docsById.put(chunk.getId(), doc);
+                totalLength += terms.size();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Collection<String> ids) {
+        lock.writeLock().lock();
+        try {
+            for (String id : ids) {
+                Integer doc = docsById.remove(id);
+                if (doc != null) {
+                    removed.set(doc);
+                    totalLength -= lengths.get(doc);
+                    for (String term : new HashSet<>(tokenize(documents.get(doc).getText()))) {
+                        documentFrequencies.computeIfPresent(term, (key, df) -> df > 1 ? df - 1 : null);
+                    }
+                }
+            }
+            if (removed.cardinality() > documents.size() * COMPACT_RATIO) {
+                compact();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<Hit> search(String query, int topK) {
+        lock.readLock().lock();
+        try {
+            int count = docsById.size();
+            if (count == 0) {
+                return List.of();
+            }
+            double averageLength = (double) totalLength / count;
+            Map<Integer, Double> scores = new HashMap<>();
+            for (String term : new LinkedHashSet<>(tokenize(query))) {
+                Integer df = documentFrequencies.get(term);
+                if (df == null) {
+                    continue;
+                }
+                List<Posting> termPostings = postings.get(term);
+                double idf = Math.log(1 + (count - df + 0.5) / (df + 0.5));
+                for (Posting posting : termPostings) {
+                    if (removed.get(posting.doc())) {
+                        continue;
+                    }
+                    double norm = K1 * (1 - B + B * lengths.get(posting.doc()) / averageLength);
+                    double tf = posting.frequency() * (K1 + 1) / (posting.frequency() + norm);
+                    scores.merge(posting.doc(), idf * tf, Double::sum);
+                }
+            }
+            PriorityQueue<Map.Entry<Integer, Double>> best = new PriorityQueue<>(Map.Entry.comparingByValue());
+            for (Map.Entry<Integer, Double> entry : scores.entrySet()) {
+                best.add(entry);
+                if (best.size() > topK) {
+                    best.poll();
+                }
+            }
+            List<Hit> hits = new ArrayList<>(best.size());
+            for (Map.Entry<Integer, Double> entry : best) {
+                hits.add(new Hit(documents.get(entry.getKey()), entry.getValue()));
+            }
+            hits.sort(Comparator.comparingDouble(Hit::score).reversed());
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Renumbers the live chunks and drops the tombstones from the postings. Called with the write
+     * lock held.
+     */
+    private void compact() {
+        int[] renumbered = new int[documents.size()];
+        List<Document> liveDocuments = new ArrayList<>(docsById.size());
+        List<Integer> liveLengths = new ArrayList<>(docsById.size());
+        for (int doc = 0; doc < documents.size(); doc++) {
+            if (removed.get(doc)) {
+                renumbered[doc] = -1;
+            } else {
+                renumbered[doc] = liveDocuments.size();
+                liveDocuments.add(documents.get(doc));
+                liveLengths.add(lengths.get(doc));
+            }
+        }
+        postings.entrySet().removeIf(entry -> {
+            List<Posting> live = new ArrayList<>();
+            for (Posting posting : entry.getValue()) {
+                if (renumbered[posting.doc()] >= 0) {
+                    live.add(new Posting(renumbered[posting.doc()], posting.frequency()));
+                }
+            }
+            entry.setValue(live);
+            return live.isEmpty();
+        });
+        docsById.replaceAll((id, doc) -> renumbered[doc]);
+        documents.clear();
+        documents.addAll(liveDocuments);
+        lengths.clear();
+        lengths.addAll(liveLengths);
+        removed.clear();
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docsById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                String term = text.substring(start, i).toLowerCase(Locale.ROOT);
+                if (!STOP_WORDS.contains(term)) {
+                    terms.add(stem(term));
+                }
+                start = -1;
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Folds plain English plurals so "holidays" matches "holiday" and "policies" matches "policy".
+     */
+    private static String stem(String term) {
+        if (term.length() > 4 && term.endsWith("ies")) {
+            return term.substring(0, term.length() - 3) + "y";
+        }
+        if (term.length() > 3 && term.endsWith("s") && !term.endsWith("ss")) {
+            return term.substring(0, term.length() - 1);
+        }
+        return term;
+    }
+}
@@ -0,0 +1,76 @@
+package com.knowprogram.openai.rag;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.rag.retrieval.search.DocumentRetriever;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Caches the documents a {@link DocumentRetriever} returns for a query, keyed by the normalized
+ * query text (lower case, whitespace collapsed, trailing punctuation dropped) and the current
+ * {@link CorpusVersion}. Ingesting new content bumps the version, so older entries are never hit
+ * again and age out of the cache.
+ * <p>
+ * A hit records the latency of the retrieval it replaced as {@code rag.retrieval.cache.latency.saved}.
+ */
+public class CachingDocumentRetriever implements DocumentRetriever {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern TRAILING_PUNCTUATION = Pattern.compile("[\\p{Punct}\\s]+$");
+
+    private record Entry(List<Document> documents, long latencyNanos) {
+    }
+
+    private final DocumentRetriever delegate;
+    private final CorpusVersion corpusVersion;
+    private final Cache<String, Entry> cache;
+    private final Counter hits;
+    private final Counter misses;
+    private final Timer latencySaved;
+
+    public CachingDocumentRetriever(DocumentRetriever delegate, CorpusVersion corpusVersion, long maximumSize,
+                                    Duration expireAfterWrite, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.corpusVersion = corpusVersion;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "rag-retrieval");
+        this.hits = Counter.builder("rag.retrieval.cache.requests").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("rag.retrieval.cache.requests").tag("result", "miss").register(meterRegistry);
+        this.latencySaved = Timer.builder("rag.retrieval.cache.latency.saved").register(meterRegistry);
+    }
+
+    @Override
+    public List<Document> retrieve(Query query) {
+        String key = corpusVersion.current() + ":" + normalize(query.text());
+        Entry entry = cache.getIfPresent(key);
+        if (entry != null) {
+            hits.increment();
+            latencySaved.record(Duration.ofNanos(entry.latencyNanos()));
+            return entry.documents();
+        }
+        misses.increment();
+        long start = System.nanoTime();
+        List<Document> documents = List.copyOf(delegate.retrieve(query));
+        cache.put(key, new Entry(documents, System.nanoTime() - start));
+        return documents;
+    }
+
+    static String normalize(String text) {
+        String collapsed = WHITESPACE.matcher(text.strip().toLowerCase(Locale.ROOT)).replaceAll(" ");
+        return TRAILING_PUNCTUATION.matcher(collapsed).replaceAll("");
+    }
+}
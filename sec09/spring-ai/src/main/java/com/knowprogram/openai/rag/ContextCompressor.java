@@ -0,0 +1,178 @@
+package com.knowprogram.openai.rag;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.rag.postretrieval.document.DocumentPostProcessor;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Shrinks the retrieved chunks before they are stuffed into the prompt, in three steps:
+ * <ol>
+ *     <li>drops chunks whose 64-bit SimHash over word shingles is within {@code maxHammingDistance}
+ *     bits of a better-ranked chunk,</li>
+ *     <li>merges chunks of the same {@link IngestionPipeline#SOURCE},
+ *     {@link StreamingDocumentReader#FILE_NAME} and {@link StreamingDocumentReader#PAGE_NUMBER} with
+ *     consecutive {@link IngestionPipeline#CHUNK_INDEX} into one document, at the rank of its best
+ *     part,</li>
+ *     <li>keeps chunks in rank order while they fit in {@code tokenBudget}; the best one is always
+ *     kept.</li>
+ * </ol>
+ */
+public class ContextCompressor implements DocumentPostProcessor {
+
+    private static final int SHINGLE = 3;
+
+    private final TokenCountEstimator tokenCountEstimator;
+    private final int maxHammingDistance;
+    private final int tokenBudget;
+    private final DistributionSummary tokensBefore;
+    private final DistributionSummary tokensAfter;
+
+    public ContextCompressor(TokenCountEstimator tokenCountEstimator, int maxHammingDistance, int tokenBudget,
+                             MeterRegistry meterRegistry) {
+        this.tokenCountEstimator = tokenCountEstimator;
+        this.maxHammingDistance = maxHammingDistance;
+        this.tokenBudget = tokenBudget;
+        this.tokensBefore = DistributionSummary.builder("rag.context.tokens").tag("stage", "retrieved")
+                .register(meterRegistry);
+        this.tokensAfter = DistributionSummary.builder("rag.context.tokens").tag("stage", "compressed")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public List<Document> process(Query query, List<Document> documents) {
+        if (documents.isEmpty()) {
+            return documents;
+        }
+        tokensBefore.record(documents.stream().mapToInt(document -> tokens(document.getText())).sum());
+        List<Document> compressed = fitBudget(mergeAdjacent(dedupe(documents)));
+        tokensAfter.record(compressed.stream().mapToInt(document -> tokens(document.getText())).sum());
+        return compressed;
+    }
+
+    private List<Document> dedupe(List<Document> documents) {
+        List<Document> kept = new ArrayList<>();
+        List<Long> signatures = new ArrayList<>();
+        for (Document document : documents) {
+            long signature = simHash(document.getText());
+            boolean duplicate = false;
+            for (long other : signatures) {
+                if (Long.bitCount(signature ^ other) <= maxHammingDistance) {
+                    duplicate = true;
+                    break;
+                }
+            }
+            if (!duplicate) {
+                kept.add(document);
+                signatures.add(signature);
+            }
+        }
+        return kept;
+    }
+
+    private List<Document> mergeAdjacent(List<Document> documents) {
+        Map<String, List<Integer>> bySource = new HashMap<>();
+        for (int rank = 0; rank < documents.size(); rank++) {
+            Document document = documents.get(rank);
+            Object source = document.getMetadata().get(IngestionPipeline.SOURCE);
+            if (source != null && chunkIndex(document) != null) {
+                String key = source + "/" + document.getMetadata().get(StreamingDocumentReader.FILE_NAME) + "#"
+                        + document.getMetadata().get(StreamingDocumentReader.PAGE_NUMBER);
+                bySource.computeIfAbsent(key, k -> new ArrayList<>()).add(rank);
+            }
+        }
+        Document[] merged = documents.toArray(Document[]::new);
+        for (List<Integer> ranks : bySource.values()) {
+            if (ranks.size() < 2) {
+                continue;
+            }
+            ranks.sort(Comparator.comparing(rank -> chunkIndex(documents.get(rank))));
+            int runStart = 0;
+            for (int i = 1; i <= ranks.size(); i++) {
+                boolean adjacent = i < ranks.size()
+                        && chunkIndex(documents.get(ranks.get(i))) == chunkIndex(documents.get(ranks.get(i - 1))) + 1;
+                if (!adjacent) {
+                    if (i - runStart > 1) {
+                        List<Integer> run = ranks.subList(runStart, i);
+                        int best = run.stream().min(Integer::compare).orElseThrow();
+                        StringBuilder text = new StringBuilder();
+                        for (int rank : run) {
+                            text.append(text.isEmpty() ? "" : " ").append(documents.get(rank).getText());
+                            merged[rank] = null;
+                        }
+                        merged[best] = documents.get(best).mutate().text(text.toString()).build();
+                    }
+                    runStart = i;
+                }
+            }
+        }
+        List<Document> result = new ArrayList<>();
+        for (Document document : merged) {
+            if (document != null) {
+                result.add(document);
+            }
+        }
+        return result;
+    }
+
+    private List<Document> fitBudget(List<Document> documents) {
+        List<Document> kept = new ArrayList<>();
+        int used = 0;
+        for (Document document : documents) {
+            int tokens = tokens(document.getText());
+            if (!kept.isEmpty() && used + tokens > tokenBudget) {
+                continue;
+            }
+            kept.add(document);
+            used += tokens;
+        }
+        return kept;
+    }
+
+    private int tokens(String text) {
+        return text == null ? 0 : tokenCountEstimator.estimate(text);
+    }
+
+    private static Integer chunkIndex(Document document) {
+        return document.getMetadata().get(IngestionPipeline.CHUNK_INDEX) instanceof Number number
+                ? number.intValue()
+                : null;
+    }
+
+    static long simHash(String text) {
+        List<String> terms = Bm25Index.tokenize(text);
+        int[] weights = new int[64];
+        int shingles = Math.max(1, terms.size() - SHINGLE + 1);
+        for (int i = 0; i < shingles; i++) {
+            long hash = mix(Objects.hash(terms.subList(i, Math.min(terms.size(), i + SHINGLE)).toArray()));
+            for (int bit = 0; bit < 64; bit++) {
+                weights[bit] += (hash >>> bit & 1) == 1 ? 1 : -1;
+            }
+        }
+        long signature = 0;
+        for (int bit = 0; bit < 64; bit++) {
+            if (weights[bit] > 0) {
+                signature |= 1L << bit;
+            }
+        }
+        return signature;
+    }
+
+    /**
+     * Spreads a 32-bit hash over 64 bits (SplitMix64 finalizer).
+     */
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+        return value ^ (value >>> 31);
+    }
+}
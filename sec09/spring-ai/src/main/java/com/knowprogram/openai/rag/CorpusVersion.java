@@ -0,0 +1,20 @@
+package com.knowprogram.openai.rag;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counter bumped whenever new content reaches the vector store, so results derived from the
+ * corpus can tell whether they are stale.
+ */
+public class CorpusVersion {
+
+    private final AtomicLong version = new AtomicLong();
+
+    public long current() {
+        return version.get();
+    }
+
+    public long increment() {
+        return version.incrementAndGet();
+    }
+}
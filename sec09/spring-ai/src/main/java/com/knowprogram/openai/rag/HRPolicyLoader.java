@@ -1,31 +1,31 @@
 package com.knowprogram.openai.rag;
 
-import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
-import org.springframework.ai.document.Document;
-import org.springframework.ai.reader.tika.TikaDocumentReader;
-import org.springframework.ai.transformer.splitter.TokenTextSplitter;
-import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.Resource;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 
-import java.util.List;
-
 @Component
 @RequiredArgsConstructor
 public class HRPolicyLoader {
-    private final VectorStore vectorStore;
+    private final IngestionPipeline ingestionPipeline;
+    private final StreamingDocumentReader streamingDocumentReader;
+    private final ParallelTokenTextSplitter textSplitter;
+    private final ObjectProvider<WatchedDirectoryIngestion> hrPolicyWatcher;
 
-    @Value("classpath:/Eazybytes_HR_Policies.pdf")
-    Resource hrPolicyPdf;
+    @Value("${app.ingestion.hr-policies.location}")
+    String hrPolicyLocation;
 
-    @PostConstruct
+    @EventListener(ApplicationReadyEvent.class)
     public void loadpdf(){
-        TikaDocumentReader tikaDocumentReader = new TikaDocumentReader(hrPolicyPdf);
-        List<Document> documents = tikaDocumentReader.get();
-        TokenTextSplitter textSplitter = TokenTextSplitter.builder().withChunkSize(100).withMaxNumChunks(400).build();
-        List<Document> splittedDocs = textSplitter.split(documents);
-        vectorStore.add(splittedDocs);
+        WatchedDirectoryIngestion watcher = hrPolicyWatcher.getIfAvailable();
+        if (watcher != null) {
+            watcher.start();
+            return;
+        }
+        ingestionPipeline.submitStream("hr-policies",
+                () -> streamingDocumentReader.read(hrPolicyLocation, textSplitter));
     }
 }
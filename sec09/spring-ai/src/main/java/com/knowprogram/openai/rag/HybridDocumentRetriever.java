@@ -0,0 +1,114 @@
+package com.knowprogram.openai.rag;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.rag.retrieval.search.DocumentRetriever;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link DocumentRetriever} that runs a {@link Bm25Index} keyword search and a {@link VectorStore}
+ * similarity search in parallel and fuses the two rankings with reciprocal rank fusion: each chunk
+ * scores {@code sum(1 / (rrfK + rank))} over the lists it appears in, and the best {@code topK} are
+ * returned.
+ * <p>
+ * Each search fetches {@code candidates} chunks. The similarity threshold applies to the vector
+ * search only; a chunk that matches the query terms is kept even when its embedding is not close.
+ * If the vector search fails, the keyword results are returned on their own.
+ * <p>
+ * Vector searches run on {@code searchThreads} threads with room for {@code queueCapacity} waiting
+ * searches; past that, the calling thread runs its own vector search before the keyword one.
+ */
+public class HybridDocumentRetriever implements DocumentRetriever, DisposableBean {
+    private static final Logger logger = LoggerFactory.getLogger(HybridDocumentRetriever.class);
+
+    private final VectorStore vectorStore;
+    private final Bm25Index keywordIndex;
+    private final int topK;
+    private final int candidates;
+    private final double similarityThreshold;
+    private final int rrfK;
+    private final ExecutorService vectorSearches;
+    private final Timer vectorTime;
+    private final Timer keywordTime;
+
+    public HybridDocumentRetriever(VectorStore vectorStore, Bm25Index keywordIndex, int topK, int candidates,
+                                   double similarityThreshold, int rrfK, int searchThreads, int queueCapacity,
+                                   MeterRegistry meterRegistry) {
+        this.vectorStore = vectorStore;
+        this.keywordIndex = keywordIndex;
+        this.topK = topK;
+        this.candidates = Math.max(candidates, topK);
+        this.similarityThreshold = similarityThreshold;
+        this.rrfK = rrfK;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.vectorSearches = new ThreadPoolExecutor(searchThreads, searchThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+                    Thread thread = new Thread(r, "hybrid-vector-search-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+        this.vectorTime = Timer.builder("rag.retrieval").tag("retriever", "vector").register(meterRegistry);
+        this.keywordTime = Timer.builder("rag.retrieval").tag("retriever", "bm25").register(meterRegistry);
+    }
+
+    @Override
+    public List<Document> retrieve(Query query) {
+        CompletableFuture<List<Document>> vector = CompletableFuture.supplyAsync(() -> vectorTime.record(() ->
+                vectorStore.similaritySearch(SearchRequest.builder()
+                        .query(query.text())
+                        .topK(candidates)
+                        .similarityThreshold(similarityThreshold)
+                        .build())), vectorSearches);
+        List<Bm25Index.Hit> keyword = keywordTime.record(() -> keywordIndex.search(query.text(), candidates));
+
+        Map<String, Document> byId = new LinkedHashMap<>();
+        Map<String, Double> fused = new LinkedHashMap<>();
+        List<Document> vectorHits;
+        try {
+            vectorHits = vector.join();
+        } catch (RuntimeException e) {
+            logger.warn("Vector search failed, using keyword results only", e);
+            vectorHits = List.of();
+        }
+        for (int rank = 0; rank < vectorHits.size(); rank++) {
+            Document document = vectorHits.get(rank);
+            byId.putIfAbsent(document.getId(), document);
+            fused.merge(document.getId(), 1.0 / (rrfK + rank + 1), Double::sum);
+        }
+        for (int rank = 0; rank < keyword.size(); rank++) {
+            Document document = keyword.get(rank).document();
+            byId.putIfAbsent(document.getId(), document);
+            fused.merge(document.getId(), 1.0 / (rrfK + rank + 1), Double::sum);
+        }
+
+        List<Map.Entry<String, Double>> ranked = new ArrayList<>(fused.entrySet());
+        ranked.sort(Map.Entry.<String, Double>comparingByValue().reversed());
+        List<Document> result = new ArrayList<>(Math.min(topK, ranked.size()));
+        for (Map.Entry<String, Double> entry : ranked.subList(0, Math.min(topK, ranked.size()))) {
+            result.add(byId.get(entry.getKey()).mutate().score(entry.getValue()).build());
+        }
+        return result;
+    }
+
+    @Override
+    public void destroy() {
+        vectorSearches.shutdownNow();
+    }
+}
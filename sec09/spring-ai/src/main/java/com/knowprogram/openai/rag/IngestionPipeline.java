@@ -0,0 +1,416 @@
+package com.knowprogram.openai.rag;
+
+import com.knowprogram.openai.cache.PromptFingerprint;
+import com.knowprogram.openai.vectorstore.HnswVectorStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.qdrant.client.PointIdFactory;
+import io.qdrant.client.QdrantClient;
+import io.qdrant.client.ValueFactory;
+import io.qdrant.client.grpc.Points;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Loads documents into the {@link VectorStore} in the background.
+ * <p>
+ * Each chunk gets an id derived from its source, its {@link StreamingDocumentReader#FILE_NAME} and
+ * the SHA-256 of its text, so an unchanged chunk always maps to the same point while the same text
+ * in two files stays two points that are updated and deleted with their own file. The id is also
+ * kept as {@link #CHUNK_ID} metadata, which stale chunks are deleted by. Chunks whose id is already
+ * in the store are skipped, apart from rewriting their {@link #CHUNK_INDEX} and page, and only new
+ * ones are embedded, in batches of {@code batchSize} on a pool of {@code parallelism} threads. The
+ * pool's queue is bounded, so a large corpus never holds more than a few batches in memory at once.
+ * With {@link #submitStream} chunks are also read lazily, so memory stays flat regardless of corpus
+ * size.
+ * <p>
+ * Every chunk also goes into the {@link Bm25Index}: skipped ones right away, embedded ones once
+ * their batch is stored. Each stored batch bumps the {@link CorpusVersion}.
+ */
+public class IngestionPipeline implements DisposableBean {
+    private static final Logger logger = LoggerFactory.getLogger(IngestionPipeline.class);
+
+    public static final String CONTENT_HASH = "content_hash";
+    public static final String SOURCE = "source";
+    public static final String CHUNK_INDEX = "chunk_index";
+    public static final String CHUNK_ID = "chunk_id";
+
+    private final VectorStore vectorStore;
+    private final Bm25Index keywordIndex;
+    private final CorpusVersion corpusVersion;
+    private final String collectionName;
+    private final int batchSize;
+    private final MeterRegistry meterRegistry;
+    private final ExecutorService coordinator = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "ingestion-coordinator");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ThreadPoolExecutor embedders;
+    private final Timer batchTime;
+    private final Map<String, Progress> progress = new HashMap<>();
+    private final Map<String, Set<String>> idsByScope = new HashMap<>();
+
+    public IngestionPipeline(VectorStore vectorStore, Bm25Index keywordIndex, CorpusVersion corpusVersion,
+                             String collectionName, int batchSize, int parallelism, MeterRegistry meterRegistry) {
+        this.vectorStore = vectorStore;
+        this.keywordIndex = keywordIndex;
+        this.corpusVersion = corpusVersion;
+        this.collectionName = collectionName;
+        this.batchSize = batchSize;
+        this.meterRegistry = meterRegistry;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.embedders = new ThreadPoolExecutor(parallelism, parallelism, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(parallelism * 2), r -> {
+                    Thread thread = new Thread(r, "ingestion-embedder-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+        this.batchTime = Timer.builder("rag.ingestion.batch").register(meterRegistry);
+    }
+
+    /**
+     * Reads and ingests the chunks of {@code source} on a background thread. {@code chunks} is called
+     * on that thread too, so parsing and splitting stay off the caller.
+     */
+    public CompletableFuture<Void> submit(String source, Supplier<List<Document>> chunks) {
+        return submitStream(source, () -> chunks.get().stream());
+    }
+
+    /**
+     * Like {@link #submit}, but pulls chunks from {@code chunks} lazily, {@code batchSize} at a time,
+     * so only the ids of the chunks seen so far are kept for the whole source. The stream is closed
+     * when ingestion ends, and the stored chunks of {@code source} it no longer contains are deleted.
+     */
+    public CompletableFuture<Void> submitStream(String source, Supplier<Stream<Document>> chunks) {
+        return onCoordinator(source, () -> {
+            Set<String> ids;
+            try (Stream<Document> stream = chunks.get()) {
+                ids = ingest(source, stream.iterator());
+            }
+            if (ids.isEmpty()) {
+                logger.warn("No chunks read from {}, keeping its stored chunks", source);
+                return;
+            }
+            FilterExpressionBuilder b = new FilterExpressionBuilder();
+            vectorStore.delete(b.and(b.eq(SOURCE, source), b.nin(CHUNK_ID, new ArrayList<>(ids))).build());
+            replaceIds(source, source, ids);
+        });
+    }
+
+    /**
+     * Ingests one file of {@code source} like {@link #submitStream}, then deletes the chunks of that
+     * file that are no longer in it, so an edited file only costs the embedding of its changed chunks.
+     * Files are matched by the {@link StreamingDocumentReader#FILE_NAME} metadata of their chunks.
+     */
+    public CompletableFuture<Void> submitFile(String source, String fileName, Supplier<Stream<Document>> chunks) {
+        return onCoordinator(source, () -> {
+            Set<String> ids;
+            try (Stream<Document> stream = chunks.get()) {
+                ids = ingest(source, stream.iterator());
+            }
+            if (ids.isEmpty()) {
+                // more likely a file caught mid-write than an emptied one; keep what is stored
+                logger.warn("No chunks read from {}, keeping its stored chunks", fileName);
+                return;
+            }
+            FilterExpressionBuilder b = new FilterExpressionBuilder();
+            vectorStore.delete(b.and(b.and(b.eq(SOURCE, source), b.eq(StreamingDocumentReader.FILE_NAME, fileName)),
+                    b.nin(CHUNK_ID, new ArrayList<>(ids))).build());
+            replaceIds(source, source + "/" + fileName, ids);
+        });
+    }
+
+    /**
+     * Deletes every chunk of one file of {@code source}, after any ingestion already submitted.
+     */
+    public CompletableFuture<Void> removeFile(String source, String fileName) {
+        return onCoordinator(source, () -> {
+            FilterExpressionBuilder b = new FilterExpressionBuilder();
+            vectorStore.delete(b.and(b.eq(SOURCE, source), b.eq(StreamingDocumentReader.FILE_NAME, fileName)).build());
+            Set<String> previous = idsByScope.remove(source + "/" + fileName);
+            if (previous != null) {
+                keywordIndex.remove(previous);
+                chunkCounter(source, "deleted").increment(previous.size());
+            }
+            corpusVersion.increment();
+            logger.info("Removed {} from {}", fileName, source);
+        });
+    }
+
+    private CompletableFuture<Void> onCoordinator(String source, Runnable task) {
+        return CompletableFuture.runAsync(task, coordinator)
+                .whenComplete((ignored, e) -> {
+                    if (e != null) {
+                        logger.error("Ingestion of {} failed", source, e);
+                    }
+                });
+    }
+
+    /**
+     * Drops from the keyword index the chunks {@code scope} had before and no longer has. Chunk ids
+     * are unique to their file, so no other file can still hold them.
+     */
+    private void replaceIds(String source, String scope, Set<String> ids) {
+        Set<String> previous = idsByScope.put(scope, ids);
+        if (previous != null) {
+            previous.removeAll(ids);
+            if (!previous.isEmpty()) {
+                keywordIndex.remove(previous);
+                corpusVersion.increment();
+                chunkCounter(source, "deleted").increment(previous.size());
+            }
+        }
+    }
+
+    static String chunkId(String source, String fileName, String hash) {
+        String key = source + "/" + (fileName == null ? "" : fileName) + "/" + hash;
+        return UUID.nameUUIDFromBytes(key.getBytes(UTF_8)).toString();
+    }
+
+    private Set<String> ingest(String source, Iterator<Document> chunks) {
+        long start = System.nanoTime();
+        Progress sourceProgress = progress(source);
+        sourceProgress.reset();
+        Run run = new Run(source, sourceProgress);
+
+        List<Document> window = new ArrayList<>(batchSize);
+        while (chunks.hasNext()) {
+            window.add(chunks.next());
+            if (window.size() == batchSize) {
+                run.accept(window);
+                window = new ArrayList<>(batchSize);
+            }
+        }
+        run.accept(window);
+        run.finish();
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long embedded = run.embedded.get();
+        logger.info("Ingested {}: {} chunks, {} embedded, {} skipped in {}s ({} chunks/s)", source, run.index,
+                embedded, run.skipped, String.format("%.1f", seconds),
+                String.format("%.1f", embedded / Math.max(seconds, 1e-3)));
+        return run.seen;
+    }
+
+    /**
+     * State of one ingestion of a source: assigns ids, drops chunks already seen or stored, and hands
+     * pending chunks to the embedders in batches of {@code batchSize}.
+     */
+    private class Run {
+        private final String source;
+        private final Progress progress;
+        private final Set<String> seen = new HashSet<>();
+        private final Phaser inFlight = new Phaser(1);
+        private final AtomicLong embedded = new AtomicLong();
+        private List<Document> pending = new ArrayList<>();
+        private int index;
+        private long skipped;
+
+        Run(String source, Progress progress) {
+            this.source = source;
+            this.progress = progress;
+        }
+
+        void accept(List<Document> window) {
+            progress.total.addAndGet(window.size());
+            Map<String, Document> byId = new LinkedHashMap<>();
+            for (Document chunk : window) {
+                String hash = PromptFingerprint.sha256(chunk.getText());
+                Object fileName = chunk.getMetadata().get(StreamingDocumentReader.FILE_NAME);
+                String id = chunkId(source, fileName == null ? null : fileName.toString(), hash);
+                Map<String, Object> metadata = new HashMap<>(chunk.getMetadata());
+                metadata.put(CONTENT_HASH, hash);
+                metadata.put(SOURCE, source);
+                metadata.put(CHUNK_INDEX, index++);
+                metadata.put(CHUNK_ID, id);
+                if (seen.add(id)) {
+                    byId.put(id, Document.builder().id(id).text(chunk.getText()).metadata(metadata).build());
+                }
+            }
+            int duplicates = window.size() - byId.size();
+            Set<String> existing = existingIds(new ArrayList<>(byId.keySet()));
+            List<Document> unchanged = byId.values().stream().filter(chunk -> existing.contains(chunk.getId())).toList();
+            updatePositions(unchanged);
+            keywordIndex.add(unchanged);
+            int windowSkipped = existing.size() + duplicates;
+            skipped += windowSkipped;
+            progress.done.addAndGet(windowSkipped);
+            chunkCounter(source, "skipped").increment(windowSkipped);
+
+            for (Document chunk : byId.values()) {
+                if (!existing.contains(chunk.getId())) {
+                    pending.add(chunk);
+                }
+            }
+            if (pending.size() >= batchSize) {
+                send(pending.subList(0, batchSize));
+                pending = new ArrayList<>(pending.subList(batchSize, pending.size()));
+            }
+        }
+
+        void finish() {
+            if (!pending.isEmpty()) {
+                send(pending);
+                pending = new ArrayList<>();
+            }
+            inFlight.arriveAndAwaitAdvance();
+        }
+
+        private void send(List<Document> chunks) {
+            List<Document> batch = List.copyOf(chunks);
+            inFlight.register();
+            CompletableFuture.runAsync(() -> {
+                batchTime.record(() -> vectorStore.add(batch));
+                keywordIndex.add(batch);
+                corpusVersion.increment();
+                embedded.addAndGet(batch.size());
+                progress.done.addAndGet(batch.size());
+                chunkCounter(source, "embedded").increment(batch.size());
+            }, embedders).exceptionally(e -> {
+                chunkCounter(source, "failed").increment(batch.size());
+                logger.warn("Failed to ingest a batch of {} chunks from {}", batch.size(), source, e);
+                return null;
+            }).whenComplete((ignored, e) -> inFlight.arriveAndDeregister());
+        }
+    }
+
+    private Set<String> existingIds(List<String> ids) {
+        if (vectorStore instanceof HnswVectorStore hnswVectorStore) {
+            return hnswVectorStore.existingIds(ids);
+        }
+        Optional<QdrantClient> client = vectorStore.getNativeClient();
+        if (client.isEmpty() || ids.isEmpty()) {
+            return Set.of();
+        }
+        List<Points.PointId> pointIds = ids.stream().map(id -> PointIdFactory.id(UUID.fromString(id))).toList();
+        try {
+            List<Points.RetrievedPoint> points = client.get()
+                    .retrieveAsync(collectionName, pointIds, false, false, null)
+                    .get();
+            Set<String> existing = new HashSet<>();
+            for (Points.RetrievedPoint point : points) {
+                existing.add(point.getId().getUuid());
+            }
+            return existing;
+        } catch (ExecutionException e) {
+            logger.warn("Could not look up existing chunks in {}, ingesting all of them", collectionName, e);
+            return Set.of();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Set.of();
+        }
+    }
+
+    /**
+     * Rewrites the {@link #CHUNK_INDEX} and {@link StreamingDocumentReader#PAGE_NUMBER} of stored chunks
+     * that were skipped, so they match where the chunks sit in the file now.
+     */
+    private void updatePositions(List<Document> chunks) {
+        if (chunks.isEmpty()) {
+            return;
+        }
+        if (vectorStore instanceof HnswVectorStore hnswVectorStore) {
+            Map<String, Map<String, Object>> positions = new HashMap<>();
+            chunks.forEach(chunk -> positions.put(chunk.getId(), position(chunk)));
+            hnswVectorStore.updateMetadata(positions);
+            return;
+        }
+        Optional<QdrantClient> client = vectorStore.getNativeClient();
+        if (client.isEmpty()) {
+            return;
+        }
+        List<Points.PointsUpdateOperation> operations = new ArrayList<>();
+        for (Document chunk : chunks) {
+            Points.PointsUpdateOperation.SetPayload.Builder setPayload = Points.PointsUpdateOperation.SetPayload
+                    .newBuilder()
+                    .setPointsSelector(Points.PointsSelector.newBuilder().setPoints(Points.PointsIdsList.newBuilder()
+                            .addIds(PointIdFactory.id(UUID.fromString(chunk.getId())))));
+            position(chunk).forEach((key, value) -> setPayload.putPayload(key,
+                    ValueFactory.value(((Number) value).longValue())));
+            operations.add(Points.PointsUpdateOperation.newBuilder().setSetPayload(setPayload).build());
+        }
+        try {
+            client.get().batchUpdateAsync(collectionName, operations).get();
+        } catch (ExecutionException e) {
+            logger.warn("Could not update the positions of {} unchanged chunks in {}", chunks.size(),
+                    collectionName, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Map<String, Object> position(Document chunk) {
+        Map<String, Object> position = new HashMap<>();
+        position.put(CHUNK_INDEX, chunk.getMetadata().get(CHUNK_INDEX));
+        if (chunk.getMetadata().get(StreamingDocumentReader.PAGE_NUMBER) instanceof Number page) {
+            position.put(StreamingDocumentReader.PAGE_NUMBER, page);
+        }
+        return position;
+    }
+
+    private Counter chunkCounter(String source, String result) {
+        return meterRegistry.counter("rag.ingestion.chunks", "source", source, "result", result);
+    }
+
+    private synchronized Progress progress(String source) {
+        return progress.computeIfAbsent(source, key -> {
+            Progress created = new Progress();
+            Gauge.builder("rag.ingestion.progress", created, Progress::ratio).tag("source", key).register(meterRegistry);
+            return created;
+        });
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        coordinator.shutdownNow();
+        embedders.shutdown();
+        embedders.awaitTermination(30, TimeUnit.SECONDS);
+    }
+
+    private static class Progress {
+        private final AtomicLong total = new AtomicLong();
+        private final AtomicLong done = new AtomicLong();
+
+        void reset() {
+            total.set(0);
+            done.set(0);
+        }
+
+        double ratio() {
+            long chunks = total.get();
+            return chunks == 0 ? 1.0 : (double) done.get() / chunks;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.knowprogram.openai.rag;
+
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.Encoding;
+import com.knuddels.jtokkit.api.EncodingType;
+import com.knuddels.jtokkit.api.IntArrayList;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.transformer.splitter.TextSplitter;
+import org.springframework.ai.transformer.splitter.TokenTextSplitter;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Drop-in replacement for {@link TokenTextSplitter} that produces the same chunks with less work
+ * per token and splits the documents of one call on a {@link ForkJoinPool}.
+ * <p>
+ * The chunking rules are those of {@code TokenTextSplitter.doSplit}: windows of {@code chunkSize}
+ * cl100k tokens, cut after the last {@code . ? ! \n} past {@code minChunkSizeChars}, at most
+ * {@code maxNumChunks} windows and the rest as one trailing chunk. Tokens stay in an
+ * {@link IntArrayList} addressed by offset instead of boxed sub-lists, and windows are decoded
+ * from a lazily filled token-to-bytes table into a per-thread buffer.
+ */
+public class ParallelTokenTextSplitter extends TextSplitter implements DisposableBean {
+
+    private static final Encoding ENCODING = Encodings.newLazyEncodingRegistry().getEncoding(EncodingType.CL100K_BASE);
+    private static final byte[][] TOKEN_BYTES = new byte[1 << 17][];
+    private static final ThreadLocal<byte[]> BUFFER = ThreadLocal.withInitial(() -> new byte[8192]);
+
+    private final int chunkSize;
+    private final int minChunkSizeChars;
+    private final int minChunkLengthToEmbed;
+    private final int maxNumChunks;
+    private final boolean keepSeparator;
+    private final ForkJoinPool pool;
+
+    /**
+     * Same defaults as {@link TokenTextSplitter.Builder} for everything but the chunk size and the
+     * number of chunks.
+     */
+    public ParallelTokenTextSplitter(int chunkSize, int maxNumChunks, int parallelism) {
+        this(chunkSize, 350, 5, maxNumChunks, true, parallelism);
+    }
+
+    public ParallelTokenTextSplitter(int chunkSize, int minChunkSizeChars, int minChunkLengthToEmbed,
+                                     int maxNumChunks, boolean keepSeparator, int parallelism) {
+        this.chunkSize = chunkSize;
+        this.minChunkSizeChars = minChunkSizeChars;
+        this.minChunkLengthToEmbed = minChunkLengthToEmbed;
+        this.maxNumChunks = maxNumChunks;
+        this.keepSeparator = keepSeparator;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.pool = new ForkJoinPool(parallelism, p -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            thread.setName("token-splitter-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+    }
+
+    @Override
+    public List<Document> split(List<Document> documents) {
+        if (documents.size() < 2) {
+            return super.split(documents);
+        }
+        return pool.invoke(new SplitTask(documents, 0, documents.size()));
+    }
+
+    @Override
+    protected List<String> splitText(String text) {
+        List<String> chunks = new ArrayList<>();
+        if (text == null || text.trim().isEmpty()) {
+            return chunks;
+        }
+        IntArrayList tokens = ENCODING.encode(text);
+        int from = 0;
+        int windows = 0;
+        while (from < tokens.size() && windows < maxNumChunks) {
+            int to = Math.min(from + chunkSize, tokens.size());
+            String chunkText = decode(tokens, from, to);
+            if (chunkText.trim().isEmpty()) {
+                from = to;
+                continue;
+            }
+            int lastPunctuation = Math.max(chunkText.lastIndexOf('.'), Math.max(chunkText.lastIndexOf('?'),
+                    Math.max(chunkText.lastIndexOf('!'), chunkText.lastIndexOf('\n'))));
+            if (lastPunctuation != -1 && lastPunctuation > minChunkSizeChars) {
+                chunkText = chunkText.substring(0, lastPunctuation + 1);
+            }
+            String chunk = keepSeparator
+                    ? chunkText.trim()
+                    : chunkText.replace(System.lineSeparator(), " ").trim();
+            if (chunk.length() > minChunkLengthToEmbed) {
+                chunks.add(chunk);
+            }
+            // re-encoding rather than counting the window keeps the offsets of TokenTextSplitter, which
+            // differ from the window size when the cut or the decoding changed the text
+            from += ENCODING.countTokens(chunkText);
+            windows++;
+        }
+        if (from < tokens.size()) {
+            String remaining = decode(tokens, from, tokens.size()).replace(System.lineSeparator(), " ").trim();
+            if (remaining.length() > minChunkLengthToEmbed) {
+                chunks.add(remaining);
+            }
+        }
+        return chunks;
+    }
+
+    private static String decode(IntArrayList tokens, int from, int to) {
+        byte[] buffer = BUFFER.get();
+        int length = 0;
+        for (int i = from; i < to; i++) {
+            byte[] bytes = tokenBytes(tokens.get(i));
+            if (length + bytes.length > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + bytes.length));
+                BUFFER.set(buffer);
+            }
+            System.arraycopy(bytes, 0, buffer, length, bytes.length);
+            length += bytes.length;
+        }
+        return new String(buffer, 0, length, UTF_8);
+    }
+
+    /**
+     * Filled on first use of each token; concurrent fills write equal arrays, so the race is benign.
+     */
+    private static byte[] tokenBytes(int token) {
+        byte[] bytes = TOKEN_BYTES[token];
+        if (bytes == null) {
+            IntArrayList single = new IntArrayList(1);
+            single.add(token);
+            bytes = ENCODING.decodeBytes(single);
+            TOKEN_BYTES[token] = bytes;
+        }
+        return bytes;
+    }
+
+    @Override
+    public void destroy() {
+        pool.shutdownNow();
+    }
+
+    private class SplitTask extends RecursiveTask<List<Document>> {
+        private final List<Document> documents;
+        private final int from;
+        private final int to;
+
+        SplitTask(List<Document> documents, int from, int to) {
+            this.documents = documents;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<Document> compute() {
+            if (to - from == 1) {
+                return ParallelTokenTextSplitter.super.split(documents.subList(from, to));
+            }
+            int middle = (from + to) >>> 1;
+            SplitTask left = new SplitTask(documents, from, middle);
+            left.fork();
+            List<Document> right = new SplitTask(documents, middle, to).compute();
+            List<Document> result = new ArrayList<>(left.join());
+            result.addAll(right);
+            return result;
+        }
+    }
+}
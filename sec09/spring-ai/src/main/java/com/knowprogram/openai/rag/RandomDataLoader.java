@@ -3,7 +3,6 @@ package com.knowprogram.openai.rag;
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import org.springframework.ai.document.Document;
-import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.stereotype.Component;
 
 import java.util.Arrays;
@@ -12,7 +11,7 @@ import java.util.List;
 @Component
 @RequiredArgsConstructor
 public class RandomDataLoader {
-    private final VectorStore vectorStore;
+    private final IngestionPipeline ingestionPipeline;
 
     @PostConstruct
     public void loadSentencesIntoVectorStore(){
@@ -72,9 +71,8 @@ public class RandomDataLoader {
 //                "CRM systems manage customer relationships and sales pipelines.",
                 "SWOT analysis identifies strengths, weaknesses, opportunities, and threats."
         );
-        List<Document> documents = sentences.stream()
+        ingestionPipeline.submit("random-data", () -> sentences.stream()
                 .map(Document::new)
-                .toList();
-        vectorStore.add(documents);
+                .toList());
     }
 }
@@ -0,0 +1,232 @@
+package com.knowprogram.openai.rag;
+
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.metadata.TikaCoreProperties;
+import org.apache.tika.parser.AutoDetectParser;
+import org.apache.tika.parser.ParseContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.transformer.splitter.TextSplitter;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.ResourcePatternResolver;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads every resource matching a location pattern ({@code classpath:/policies/*.pdf},
+ * {@code file:/data/policies/**}) into chunks without holding a whole document in memory.
+ * <p>
+ * A reader thread parses one resource at a time with Tika and hands the text over page by page
+ * (PDF pages, or {@code maxBufferedChars} runs for formats without pages). Pages are split
+ * {@code pagesPerSplit} at a time, so a {@link ParallelTokenTextSplitter} can work on them in
+ * parallel, and their chunks are put on a queue of {@code queueCapacity}. The returned stream takes from
+ * that queue, so the parser blocks whenever the consumer falls behind. Closing the stream stops
+ * the reader thread.
+ */
+public class StreamingDocumentReader {
+    private static final Logger logger = LoggerFactory.getLogger(StreamingDocumentReader.class);
+
+    public static final String FILE_NAME = "file_name";
+    public static final String PAGE_NUMBER = "page_number";
+
+    private static final Document END = new Document("");
+
+    private final ResourcePatternResolver resourcePatternResolver;
+    private final int queueCapacity;
+    private final int maxBufferedChars;
+    private final int pagesPerSplit;
+    private final AtomicInteger threadCount = new AtomicInteger();
+
+    public StreamingDocumentReader(ResourcePatternResolver resourcePatternResolver, int queueCapacity,
+                                   int maxBufferedChars, int pagesPerSplit) {
+        this.resourcePatternResolver = resourcePatternResolver;
+        this.queueCapacity = queueCapacity;
+        this.maxBufferedChars = maxBufferedChars;
+        this.pagesPerSplit = pagesPerSplit;
+    }
+
+    public Stream<Document> read(String locationPattern, TextSplitter splitter) {
+        BlockingQueue<Document> queue = new ArrayBlockingQueue<>(queueCapacity);
+        ChunkIterator iterator = new ChunkIterator(queue);
+        Thread reader = new Thread(() -> {
+            boolean closed = false;
+            try {
+                for (Resource resource : resourcePatternResolver.getResources(locationPattern)) {
+                    if (resource.isReadable()) {
+                        parse(resource, splitter, queue);
+                    }
+                }
+            } catch (InterruptedException e) {
+                closed = true;
+            } catch (Throwable e) {
+                // errors too, such as a parser running out of memory, or the consumer waits forever
+                iterator.failure = e;
+            } finally {
+                if (!closed) {
+                    try {
+                        queue.put(END);
+                    } catch (InterruptedException ignored) {
+                        // the consumer closed the stream
+                    }
+                }
+            }
+        }, "document-reader-" + threadCount.incrementAndGet());
+        reader.setDaemon(true);
+        reader.start();
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL),
+                false).onClose(reader::interrupt);
+    }
+
+    private void parse(Resource resource, TextSplitter splitter, BlockingQueue<Document> queue)
+            throws IOException, InterruptedException {
+        String fileName = resource.getFilename() != null ? resource.getFilename() : resource.getDescription();
+        Metadata metadata = new Metadata();
+        metadata.set(TikaCoreProperties.RESOURCE_NAME_KEY, fileName);
+        PageHandler handler = new PageHandler(fileName, splitter, queue);
+        try (InputStream inputStream = resource.getInputStream()) {
+            new AutoDetectParser().parse(inputStream, handler, metadata, new ParseContext());
+        } catch (SAXException | TikaException e) {
+            if (handler.interrupted) {
+                throw new InterruptedException();
+            }
+            logger.warn("Skipping unparseable resource {}", fileName, e);
+            return;
+        }
+        logger.debug("Read {} pages from {}", handler.page, fileName);
+    }
+
+    private final class PageHandler extends DefaultHandler {
+        private final String fileName;
+        private final TextSplitter splitter;
+        private final BlockingQueue<Document> queue;
+        private final StringBuilder text = new StringBuilder();
+        private final List<Document> pages = new ArrayList<>();
+        private int page;
+        private boolean interrupted;
+
+        PageHandler(String fileName, TextSplitter splitter, BlockingQueue<Document> queue) {
+            this.fileName = fileName;
+            this.splitter = splitter;
+            this.queue = queue;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+            if ("div".equals(localName) && "page".equals(attributes.getValue("class"))) {
+                emit(text.length());
+                page++;
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) throws SAXException {
+            text.append(ch, start, length);
+            if (text.length() >= maxBufferedChars) {
+                int cut = text.length();
+                while (cut > 0 && !Character.isWhitespace(text.charAt(cut - 1))) {
+                    cut--;
+                }
+                emit(cut > 0 ? cut : text.length());
+            }
+        }
+
+        @Override
+        public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+            characters(ch, start, length);
+        }
+
+        @Override
+        public void endDocument() throws SAXException {
+            emit(text.length());
+            flush();
+        }
+
+        private void emit(int length) throws SAXException {
+            String content = text.substring(0, length).strip();
+            text.delete(0, length);
+            if (content.isEmpty()) {
+                return;
+            }
+            pages.add(Document.builder()
+                    .text(content)
+                    .metadata(Map.of(FILE_NAME, fileName, PAGE_NUMBER, Math.max(page, 1)))
+                    .build());
+            if (pages.size() >= pagesPerSplit) {
+                flush();
+            }
+        }
+
+        private void flush() throws SAXException {
+            if (pages.isEmpty()) {
+                return;
+            }
+            List<Document> chunks = splitter.split(pages);
+            pages.clear();
+            try {
+                for (Document chunk : chunks) {
+                    queue.put(chunk);
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+                throw new SAXException("Reading " + fileName + " was interrupted", e);
+            }
+        }
+    }
+
+    private static final class ChunkIterator implements Iterator<Document> {
+        private final BlockingQueue<Document> queue;
+        private volatile Throwable failure;
+        private Document next;
+
+        ChunkIterator(BlockingQueue<Document> queue) {
+            this.queue = queue;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                try {
+                    next = queue.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for chunks", e);
+                }
+            }
+            if (next == END) {
+                if (failure != null) {
+                    throw new IllegalStateException("Reading documents failed", failure);
+                }
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public Document next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Document chunk = next;
+            next = null;
+            return chunk;
+        }
+    }
+}
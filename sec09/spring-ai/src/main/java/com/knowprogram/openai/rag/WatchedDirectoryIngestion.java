@@ -0,0 +1,142 @@
+package com.knowprogram.openai.rag;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.transformer.splitter.TextSplitter;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Keeps one {@link IngestionPipeline} source in sync with the files of a directory.
+ * <p>
+ * {@link #start()} ingests every file matching {@code glob} and then watches the directory with a
+ * {@link WatchService}. A created or modified file is re-ingested once it has been quiet for
+ * {@code debounceMillis}, which only embeds its new chunks and deletes the ones that are gone; a
+ * deleted file has all its chunks removed. Sub-directories are not watched.
+ */
+public class WatchedDirectoryIngestion implements DisposableBean {
+    private static final Logger logger = LoggerFactory.getLogger(WatchedDirectoryIngestion.class);
+
+    private final IngestionPipeline ingestionPipeline;
+    private final StreamingDocumentReader streamingDocumentReader;
+    private final TextSplitter textSplitter;
+    private final String source;
+    private final Path directory;
+    private final PathMatcher matcher;
+    private final long debounceMillis;
+    private WatchService watchService;
+    private Thread watcher;
+
+    public WatchedDirectoryIngestion(IngestionPipeline ingestionPipeline, StreamingDocumentReader streamingDocumentReader,
+                                     TextSplitter textSplitter, String source, Path directory, String glob,
+                                     long debounceMillis) {
+        this.ingestionPipeline = ingestionPipeline;
+        this.streamingDocumentReader = streamingDocumentReader;
+        this.textSplitter = textSplitter;
+        this.source = source;
+        this.directory = directory.toAbsolutePath().normalize();
+        this.matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+        this.debounceMillis = debounceMillis;
+    }
+
+    public synchronized void start() {
+        if (watcher != null) {
+            return;
+        }
+        try {
+            Files.createDirectories(directory);
+            watchService = directory.getFileSystem().newWatchService();
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        scan();
+        watcher = new Thread(this::watch, "source-watcher-" + source);
+        watcher.setDaemon(true);
+        watcher.start();
+        logger.info("Watching {} for {}", directory, source);
+    }
+
+    private void scan() {
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(this::matches).forEach(this::ingest);
+        } catch (IOException e) {
+            logger.warn("Could not list {}", directory, e);
+        }
+    }
+
+    private void watch() {
+        Map<Path, Long> pending = new LinkedHashMap<>();
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS);
+                long now = System.currentTimeMillis();
+                if (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            logger.warn("Missed file events in {}, rescanning", directory);
+                            scan();
+                            continue;
+                        }
+                        Path file = directory.resolve((Path) event.context());
+                        if (matches(file) || event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                            pending.put(file, now);
+                        }
+                    }
+                    key.reset();
+                }
+                for (Iterator<Map.Entry<Path, Long>> it = pending.entrySet().iterator(); it.hasNext(); ) {
+                    Map.Entry<Path, Long> entry = it.next();
+                    if (now - entry.getValue() < debounceMillis) {
+                        continue;
+                    }
+                    it.remove();
+                    Path file = entry.getKey();
+                    if (Files.isRegularFile(file)) {
+                        ingest(file);
+                    } else if (matcher.matches(file.getFileName())) {
+                        ingestionPipeline.removeFile(source, file.getFileName().toString());
+                    }
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // shutting down
+        }
+    }
+
+    private void ingest(Path file) {
+        String fileName = file.getFileName().toString();
+        logger.info("Ingesting {} into {}", fileName, source);
+        ingestionPipeline.submitFile(source, fileName,
+                () -> streamingDocumentReader.read(file.toUri().toString(), textSplitter));
+    }
+
+    private boolean matches(Path file) {
+        return Files.isRegularFile(file) && matcher.matches(file.getFileName());
+    }
+
+    @Override
+    public synchronized void destroy() throws IOException {
+        if (watcher != null) {
+            watcher.interrupt();
+            watchService.close();
+        }
+    }
+}
@@ -1,10 +1,30 @@
 package com.knowprogram.openai.repository;
 
 import com.knowprogram.openai.entity.HelpDeskTicket;
+import com.knowprogram.openai.model.TicketSummary;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 public interface HelpDeskTicketRepository extends JpaRepository<HelpDeskTicket, Long> {
-    List<HelpDeskTicket> findByUsername(String username);
+    /**
+     * Tickets of {@code username}, newest first, older than the {@code (createdBefore, idBefore)} key
+     * of the last ticket already seen, or from the newest one when both are {@code null}. Walks the
+     * {@code (username, created_at, id)} index instead of skipping an offset.
+     */
+    @Query("""
+            select new com.knowprogram.openai.model.TicketSummary(t.id, t.issue, t.status, t.createdAt, t.eta)
+            from HelpDeskTicket t
+            where t.username = :username
+              and (:status is null or t.status = :status)
+              and (:createdBefore is null
+                   or t.createdAt < :createdBefore
+                   or (t.createdAt = :createdBefore and t.id < :idBefore))
+            order by t.createdAt desc, t.id desc
+            """)
+    List<TicketSummary> findSummaries(String username, String status, LocalDateTime createdBefore, Long idBefore,
+                                      Limit limit);
 }
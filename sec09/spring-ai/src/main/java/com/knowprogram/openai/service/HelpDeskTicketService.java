@@ -1,18 +1,26 @@
 package com.knowprogram.openai.service;
 
 import com.knowprogram.openai.entity.HelpDeskTicket;
+import com.knowprogram.openai.model.TicketPage;
 import com.knowprogram.openai.model.TicketRequest;
+import com.knowprogram.openai.model.TicketSummary;
 import com.knowprogram.openai.repository.HelpDeskTicketRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.List;
+import java.util.Locale;
 
 @Service
 @RequiredArgsConstructor
 public class HelpDeskTicketService {
 
+    public static final int DEFAULT_PAGE_SIZE = 10;
+    public static final int MAX_PAGE_SIZE = 50;
+
     private final HelpDeskTicketRepository helpDeskTicketRepository;
 
     public HelpDeskTicket createTicket(TicketRequest ticketRequest, String username) {
@@ -26,7 +34,30 @@ public class HelpDeskTicketService {
         return helpDeskTicketRepository.save(ticket);
     }
 
-    public List<HelpDeskTicket> getTicketsByUsername(String username) {
-        return helpDeskTicketRepository.findByUsername(username);
+    /**
+     * One page of the tickets of {@code username}, newest first. {@code cursor} is the
+     * {@link TicketPage#nextCursor()} of the previous page, {@code null} for the first one.
+     */
+    public TicketPage getTickets(String username, String status, Integer limit, String cursor) {
+        int pageSize = limit == null || limit < 1 ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE);
+        LocalDateTime createdBefore = null;
+        Long idBefore = null;
+        if (cursor != null && !cursor.isBlank()) {
+            int separator = cursor.lastIndexOf('_');
+            try {
+                createdBefore = LocalDateTime.parse(cursor.substring(0, Math.max(separator, 0)));
+                idBefore = Long.valueOf(cursor.substring(separator + 1));
+            } catch (DateTimeParseException | NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+            }
+        }
+        String statusFilter = status == null || status.isBlank() ? null : status.strip().toUpperCase(Locale.ROOT);
+        List<TicketSummary> tickets = helpDeskTicketRepository.findSummaries(username, statusFilter, createdBefore,
+                idBefore, Limit.of(pageSize + 1));
+        if (tickets.size() <= pageSize) {
+            return new TicketPage(tickets, null);
+        }
+        TicketSummary last = tickets.get(pageSize - 1);
+        return new TicketPage(List.copyOf(tickets.subList(0, pageSize)), last.createdAt() + "_" + last.id());
     }
-}
\ No newline at end of file
+}
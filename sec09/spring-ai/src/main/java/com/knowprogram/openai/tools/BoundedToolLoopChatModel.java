@@ -0,0 +1,264 @@
+package com.knowprogram.openai.tools;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import org.springframework.ai.model.tool.ToolExecutionResult;
+import org.springframework.ai.support.UsageCalculator;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ChatModel} that runs the tool-calling loop itself instead of leaving it to {@code delegate},
+ * so that a model which keeps asking for tools cannot hold a request for long.
+ * <p>
+ * A round is one model call and the execution of the tool calls it asks for. After a round's tools
+ * ran, the loop stops if it ran {@code maxRounds} rounds, if the cumulative usage reached
+ * {@code tokenBudget} or if {@code deadline} has passed since the request started. The model is then
+ * called once more without tools to answer from the tool results gathered so far, and the response
+ * carries {@link #STOPPED} in its metadata. A model or tool call already in flight is not
+ * interrupted; model calls are only bounded by the HTTP client's timeouts.
+ * <p>
+ * Rounds are timed as {@code tool.loop.round{round,phase=model|tools|wrap-up}} and stops are
+ * counted as {@code tool.loop.stopped{reason=rounds|tokens|deadline}}.
+ */
+public class BoundedToolLoopChatModel implements ChatModel {
+    private static final Logger logger = LoggerFactory.getLogger(BoundedToolLoopChatModel.class);
+
+    public static final String STOPPED = "tool_loop_stopped";
+    private static final String WRAP_UP_INSTRUCTION = "No more tools can be called for this request. Answer "
+            + "with the information gathered so far and say what you could not find out.";
+
+    private final ChatModel delegate;
+    private final ToolCallingManager toolCallingManager;
+    private final int maxRounds;
+    private final long tokenBudget;
+    private final Duration deadline;
+    private final MeterRegistry meterRegistry;
+
+    public BoundedToolLoopChatModel(ChatModel delegate, ToolCallingManager toolCallingManager, int maxRounds,
+                                    long tokenBudget, Duration deadline, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.toolCallingManager = toolCallingManager;
+        this.maxRounds = maxRounds;
+        this.tokenBudget = tokenBudget;
+        this.deadline = deadline;
+        this.meterRegistry = meterRegistry;
+    }
+
+    private record Loop(ToolCallingChatOptions options, long deadlineNanos) {
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        if (!(prompt.getOptions() instanceof ToolCallingChatOptions options)) {
+            return delegate.call(prompt);
+        }
+        Loop loop = start(options);
+        Prompt current = new Prompt(prompt.getInstructions(), loop.options());
+        ChatResponse previous = null;
+        for (int round = 1; ; round++) {
+            long start = System.nanoTime();
+            ChatResponse response = cumulative(delegate.call(current), previous);
+            record(round, "model", start);
+            if (!response.hasToolCalls()) {
+                return response;
+            }
+            start = System.nanoTime();
+            ToolExecutionResult result = toolCallingManager.executeToolCalls(current, response);
+            record(round, "tools", start);
+            if (result.returnDirect()) {
+                return ChatResponse.builder().from(response).generations(ToolExecutionResult.buildGenerations(result))
+                        .build();
+            }
+            current = new Prompt(result.conversationHistory(), loop.options());
+            previous = response;
+            String stop = stopReason(loop, round, response);
+            if (stop != null) {
+                start = System.nanoTime();
+                ChatResponse answer = cumulative(delegate.call(wrapUp(current, loop)), response);
+                record(round + 1, "wrap-up", start);
+                return stopped(answer, stop);
+            }
+        }
+    }
+
+    @Override
+    public Flux<ChatResponse> stream(Prompt prompt) {
+        if (!(prompt.getOptions() instanceof ToolCallingChatOptions options)) {
+            return delegate.stream(prompt);
+        }
+        return Flux.defer(() -> {
+            Loop loop = start(options);
+            return streamRound(loop, new Prompt(prompt.getInstructions(), loop.options()), null, 1);
+        });
+    }
+
+    /**
+     * Streams one round. The chunk asking for tools and the usage-only chunk the delegate sends after
+     * it are held back until the round's stream completes, so the next round starts from the round's
+     * full usage and the last chunk of the whole stream carries the usage of every round.
+     */
+    private Flux<ChatResponse> streamRound(Loop loop, Prompt current, ChatResponse previous, int round) {
+        return Flux.defer(() -> {
+            long start = System.nanoTime();
+            StreamedRound streamed = new StreamedRound();
+            return delegate.stream(current)
+                    .map(chunk -> cumulative(chunk, previous))
+                    .filter(streamed::emit)
+                    .concatWith(Flux.defer(() -> {
+                        if (streamed.toolCalls == null) {
+                            return Flux.empty();
+                        }
+                        ChatResponse response = streamed.response();
+                        record(round, "model", start);
+                        return Flux.defer(() -> {
+                            long toolsStart = System.nanoTime();
+                            ToolExecutionResult result = toolCallingManager.executeToolCalls(current, response);
+                            record(round, "tools", toolsStart);
+                            if (result.returnDirect()) {
+                                return Flux.just(ChatResponse.builder().from(response)
+                                        .generations(ToolExecutionResult.buildGenerations(result)).build());
+                            }
+                            Prompt next = new Prompt(result.conversationHistory(), loop.options());
+                            String stop = stopReason(loop, round, response);
+                            if (stop != null) {
+                                return wrapUpStream(loop, next, response, round + 1, stop);
+                            }
+                            return streamRound(loop, next, response, round + 1);
+                        }).subscribeOn(Schedulers.boundedElastic());
+                    }));
+        });
+    }
+
+    private Flux<ChatResponse> wrapUpStream(Loop loop, Prompt current, ChatResponse previous, int round,
+                                            String stop) {
+        return Flux.defer(() -> {
+            long start = System.nanoTime();
+            return delegate.stream(wrapUp(current, loop))
+                    .map(chunk -> stopped(cumulative(chunk, previous), stop))
+                    .doOnComplete(() -> record(round, "wrap-up", start));
+        });
+    }
+
+    /**
+     * The tool calls of a streamed round and the usage reported after them.
+     */
+    private static final class StreamedRound {
+        private ChatResponse toolCalls;
+        private ChatResponse usage;
+
+        boolean emit(ChatResponse chunk) {
+            if (chunk.hasToolCalls()) {
+                toolCalls = chunk;
+                return false;
+            }
+            if (toolCalls == null) {
+                return true;
+            }
+            if (!UsageCalculator.isEmpty(chunk.getMetadata().getUsage())) {
+                usage = chunk;
+            }
+            return false;
+        }
+
+        ChatResponse response() {
+            return usage == null ? toolCalls : new ChatResponse(toolCalls.getResults(), usage.getMetadata());
+        }
+    }
+
+    private Loop start(ToolCallingChatOptions options) {
+        ToolCallingChatOptions copy = options.copy();
+        copy.setInternalToolExecutionEnabled(false);
+        return new Loop(copy, System.nanoTime() + deadline.toNanos());
+    }
+
+    private String stopReason(Loop loop, int round, ChatResponse response) {
+        String reason = null;
+        if (System.nanoTime() - loop.deadlineNanos() >= 0) {
+            reason = "deadline";
+        } else if (round >= maxRounds) {
+            reason = "rounds";
+        } else if (totalTokens(response) >= tokenBudget) {
+            reason = "tokens";
+        }
+        if (reason != null) {
+            Counter.builder("tool.loop.stopped").tag("reason", reason).register(meterRegistry).increment();
+            logger.warn("Stopping tool loop after {} rounds and {} tokens: {}", round, totalTokens(response), reason);
+        }
+        return reason;
+    }
+
+    /**
+     * The conversation including the last round's tool results, with the tools taken away, so the
+     * model has to answer.
+     */
+    private static Prompt wrapUp(Prompt current, Loop loop) {
+        ToolCallingChatOptions options = loop.options().copy();
+        options.setToolCallbacks(List.of());
+        options.setToolNames(Set.of());
+        List<Message> messages = new ArrayList<>(current.getInstructions());
+        messages.add(new SystemMessage(WRAP_UP_INSTRUCTION));
+        return new Prompt(messages, options);
+    }
+
+    private static ChatResponse stopped(ChatResponse response, String reason) {
+        return ChatResponse.builder().from(response).metadata(STOPPED, reason).build();
+    }
+
+    /**
+     * Adds the usage of the earlier rounds to {@code response}, as the delegate only reports the usage
+     * of its own call. Stream chunks without usage are left alone.
+     */
+    private static ChatResponse cumulative(ChatResponse response, ChatResponse previous) {
+        ChatResponseMetadata metadata = response.getMetadata();
+        if (previous == null || UsageCalculator.isEmpty(metadata.getUsage())) {
+            return response;
+        }
+        Usage usage = UsageCalculator.getCumulativeUsage(metadata.getUsage(), previous);
+        ChatResponseMetadata.Builder builder = ChatResponseMetadata.builder()
+                .id(metadata.getId())
+                .model(metadata.getModel())
+                .rateLimit(metadata.getRateLimit())
+                .promptMetadata(metadata.getPromptMetadata())
+                .usage(usage);
+        for (Map.Entry<String, Object> entry : metadata.entrySet()) {
+            builder.keyValue(entry.getKey(), entry.getValue());
+        }
+        return new ChatResponse(response.getResults(), builder.build());
+    }
+
+    private static long totalTokens(ChatResponse response) {
+        Usage usage = response.getMetadata().getUsage();
+        return usage == null || usage.getTotalTokens() == null ? 0 : usage.getTotalTokens();
+    }
+
+    private void record(int round, String phase, long start) {
+        Timer.builder("tool.loop.round").tag("round", String.valueOf(round)).tag("phase", phase)
+                .register(meterRegistry).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public ChatOptions getDefaultOptions() {
+        return delegate.getDefaultOptions();
+    }
+}
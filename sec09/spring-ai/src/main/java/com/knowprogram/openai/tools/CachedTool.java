@@ -0,0 +1,28 @@
+package com.knowprogram.openai.tools;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a side-effect free {@code @Tool} method whose results {@link ToolResultCache} may reuse for
+ * {@link #ttl()}. Results are keyed by tool name, arguments and the {@link #contextKeys()} entries of
+ * the {@code ToolContext}.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface CachedTool {
+
+    /**
+     * How long a result is reused, such as {@code 30s} or {@code PT5M}.
+     */
+    String ttl();
+
+    /**
+     * {@code ToolContext} entries the result depends on, such as {@code username}.
+     */
+    String[] contextKeys() default {};
+}
@@ -0,0 +1,23 @@
+package com.knowprogram.openai.tools;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a mutating {@code @Tool} method after whose calls {@link ToolResultCache} drops the
+ * cached results of the {@link #value() named tools}. With {@link #contextKeys()} only the results
+ * cached for the same {@code ToolContext} entries are dropped, so they should match the
+ * {@link CachedTool#contextKeys()} of those tools.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface EvictsCachedTools {
+
+    String[] value();
+
+    String[] contextKeys() default {};
+}
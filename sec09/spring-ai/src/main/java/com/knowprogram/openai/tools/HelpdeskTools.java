@@ -1,6 +1,7 @@
 package com.knowprogram.openai.tools;
 
 import com.knowprogram.openai.entity.HelpDeskTicket;
+import com.knowprogram.openai.model.TicketPage;
 import com.knowprogram.openai.model.TicketRequest;
 import com.knowprogram.openai.service.HelpDeskTicketService;
 import lombok.RequiredArgsConstructor;
@@ -10,14 +11,13 @@ import org.springframework.ai.tool.annotation.Tool;
 import org.springframework.ai.tool.annotation.ToolParam;
 import org.springframework.stereotype.Component;
 
-import java.util.List;
-
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class HelpdeskTools {
     private final HelpDeskTicketService helpDeskTicketService;
 
+    @EvictsCachedTools(value = "getTicketStatus", contextKeys = "username")
     @Tool(name = "createTicket", description = "Create a new Support ticket", returnDirect = true)
     public String createTicket(@ToolParam(required = true, description = "Details to create a Support ticket")
                                    TicketRequest ticketRequest, ToolContext toolContext) {
@@ -28,13 +28,21 @@ public class HelpdeskTools {
         return "Ticket #" + ticket.getId() + " created successfully for user: " + username;
     }
 
-    @Tool(name = "getTicketStatus", description = "Fetch the status of the open tickets based on a given username")
-    List<HelpDeskTicket> getTicketStatus(ToolContext toolContext) {
+    @CachedTool(ttl = "60s", contextKeys = "username")
+    @Tool(name = "getTicketStatus", description = "Fetch the tickets of the current user, newest first. Returns at "
+            + "most limit tickets and a nextCursor to pass as cursor for older ones, null when there are no more")
+    TicketPage getTicketStatus(@ToolParam(required = false, description = "Only tickets with this status, such as OPEN")
+                               String status,
+                               @ToolParam(required = false, description = "Maximum number of tickets, 10 by default and at most 50")
+                               Integer limit,
+                               @ToolParam(required = false, description = "nextCursor of the previous call, to fetch older tickets")
+                               String cursor,
+                               ToolContext toolContext) {
         String username = (String) toolContext.getContext().get("username");
         log.info("Fetching ticket status for user: {}", username);
-        List<HelpDeskTicket> tickets = helpDeskTicketService.getTicketsByUsername(username);
-        log.info("Found {} tickets for user: {}", tickets.size(), username);
+        TicketPage page = helpDeskTicketService.getTickets(username, status, limit, cursor);
+        log.info("Found {} tickets for user: {}", page.tickets().size(), username);
 //        throw new RuntimeException("Unable to fetch ticket status");
-        return tickets;
+        return page;
     }
 }
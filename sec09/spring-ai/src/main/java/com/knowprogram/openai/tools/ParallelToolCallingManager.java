@@ -0,0 +1,222 @@
+package com.knowprogram.openai.tools;
+
+import io.micrometer.context.ContextSnapshot;
+import io.micrometer.context.ContextSnapshotFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import org.springframework.ai.model.tool.ToolExecutionResult;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * {@link ToolCallingManager} that runs the tool calls of one assistant message concurrently on a
+ * bounded pool, so a turn with several tool calls takes as long as the slowest one.
+ * <p>
+ * Each call is executed by {@code delegate} as a single-call message, which keeps its tool
+ * resolution, observations and exception handling. Results are returned in the order of the calls.
+ * A call's {@code timeouts.apply(toolName)} starts when a pool thread picks it up, so time spent
+ * queued behind other calls does not count against the tool; a call that is still queued after
+ * that long, or that the saturated pool rejects, is not run at all. Calls that time out, wait too
+ * long or are rejected are answered with an error text the model can act on and recorded as
+ * {@code tool.calls{result=timeout|queued|rejected}}. The result is returned directly only if every
+ * tool asks for it.
+ */
+public class ParallelToolCallingManager implements ToolCallingManager, DisposableBean {
+    private static final Logger logger = LoggerFactory.getLogger(ParallelToolCallingManager.class);
+
+    private final ToolCallingManager delegate;
+    private final Function<String, Duration> timeouts;
+    private final MeterRegistry meterRegistry;
+    private final ThreadPoolExecutor executor;
+    private final ContextSnapshotFactory contextSnapshotFactory = ContextSnapshotFactory.builder().build();
+
+    public ParallelToolCallingManager(ToolCallingManager delegate, Function<String, Duration> timeouts, int threads,
+                                      int queueCapacity, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.timeouts = timeouts;
+        this.meterRegistry = meterRegistry;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+                    Thread thread = new Thread(r, "tool-executor-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public List<ToolDefinition> resolveToolDefinitions(ToolCallingChatOptions chatOptions) {
+        return delegate.resolveToolDefinitions(chatOptions);
+    }
+
+    @Override
+    public ToolExecutionResult executeToolCalls(Prompt prompt, ChatResponse chatResponse) {
+        AssistantMessage assistantMessage = chatResponse.getResults().stream()
+                .map(Generation::getOutput)
+                .filter(AssistantMessage::hasToolCalls)
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("No tool call requested by the chat model"));
+        List<AssistantMessage.ToolCall> toolCalls = assistantMessage.getToolCalls();
+
+        ContextSnapshot snapshot = contextSnapshotFactory.captureAll();
+        long submitted = System.nanoTime();
+        List<TimedCall> calls = new ArrayList<>(toolCalls.size());
+        List<Future<ToolExecutionResult>> futures = new ArrayList<>(toolCalls.size());
+        for (AssistantMessage.ToolCall toolCall : toolCalls) {
+            AssistantMessage single = new AssistantMessage(assistantMessage.getText(), assistantMessage.getMetadata(),
+                    List.of(toolCall));
+            ChatResponse singleResponse = new ChatResponse(List.of(new Generation(single)), chatResponse.getMetadata());
+            TimedCall call = new TimedCall(snapshot.wrap(() -> delegate.executeToolCalls(prompt, singleResponse)));
+            calls.add(call);
+            try {
+                futures.add(executor.submit(call));
+            } catch (RejectedExecutionException e) {
+                futures.add(null);
+            }
+        }
+
+        List<ToolResponseMessage.ToolResponse> responses = new ArrayList<>(toolCalls.size());
+        boolean returnDirect = true;
+        for (int i = 0; i < toolCalls.size(); i++) {
+            AssistantMessage.ToolCall toolCall = toolCalls.get(i);
+            TimedCall call = calls.get(i);
+            Future<ToolExecutionResult> future = futures.get(i);
+            if (future == null) {
+                record(toolCall.name(), "rejected", submitted);
+                logger.warn("Tool {} was rejected, the tool executor is saturated", toolCall.name());
+                responses.add(busy(toolCall));
+                returnDirect = false;
+                continue;
+            }
+            Duration timeout = timeouts.apply(toolCall.name());
+            try {
+                ToolExecutionResult result = await(call, future, submitted, timeout.toNanos());
+                List<Message> history = result.conversationHistory();
+                responses.addAll(((ToolResponseMessage) history.get(history.size() - 1)).getResponses());
+                returnDirect &= result.returnDirect();
+                record(toolCall.name(), "success", call.startNanos);
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                returnDirect = false;
+                if (call.started) {
+                    record(toolCall.name(), "timeout", call.startNanos);
+                    logger.warn("Tool {} timed out after {}", toolCall.name(), timeout);
+                    responses.add(new ToolResponseMessage.ToolResponse(toolCall.id(), toolCall.name(),
+                            "Tool " + toolCall.name() + " did not answer within " + timeout.toMillis() + " ms"));
+                } else {
+                    record(toolCall.name(), "queued", submitted);
+                    logger.warn("Tool {} was still queued after {}", toolCall.name(), timeout);
+                    responses.add(busy(toolCall));
+                }
+            } catch (ExecutionException e) {
+                record(toolCall.name(), "error", call.started ? call.startNanos : submitted);
+                cancelAll(futures);
+                throw e.getCause() instanceof RuntimeException runtime ? runtime : new CompletionException(e.getCause());
+            } catch (InterruptedException e) {
+                cancelAll(futures);
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for tool " + toolCall.name(), e);
+            }
+        }
+
+        ToolResponseMessage toolResponseMessage = new ToolResponseMessage(responses, Map.of());
+        List<Message> conversationHistory = new ArrayList<>(prompt.copy().getInstructions());
+        conversationHistory.add(assistantMessage);
+        conversationHistory.add(toolResponseMessage);
+        return ToolExecutionResult.builder()
+                .conversationHistory(conversationHistory)
+                .returnDirect(returnDirect)
+                .build();
+    }
+
+    /**
+     * Waits up to {@code timeoutNanos} for {@code call} to start, then up to {@code timeoutNanos}
+     * from its start for its result.
+     */
+    private static ToolExecutionResult await(TimedCall call, Future<ToolExecutionResult> future, long submitted,
+                                             long timeoutNanos)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        while (!call.started) {
+            long remaining = submitted + timeoutNanos - System.nanoTime();
+            if (remaining <= 0) {
+                throw new TimeoutException();
+            }
+            try {
+                return future.get(remaining, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                // checked again: it may have started while we waited
+            }
+        }
+        return future.get(Math.max(0, call.startNanos + timeoutNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+
+    private static ToolResponseMessage.ToolResponse busy(AssistantMessage.ToolCall toolCall) {
+        return new ToolResponseMessage.ToolResponse(toolCall.id(), toolCall.name(),
+                "Tool " + toolCall.name() + " was not run because too many tools are running, try again later");
+    }
+
+    private void record(String tool, String result, long start) {
+        Timer.builder("tool.calls").tag("tool", tool).tag("result", result).register(meterRegistry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    private static void cancelAll(List<Future<ToolExecutionResult>> futures) {
+        for (Future<ToolExecutionResult> future : futures) {
+            if (future != null) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * A tool call that notes when a pool thread starts running it.
+     */
+    private static final class TimedCall implements Callable<ToolExecutionResult> {
+        private final Callable<ToolExecutionResult> delegate;
+        private volatile long startNanos;
+        private volatile boolean started;
+
+        TimedCall(Callable<ToolExecutionResult> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public ToolExecutionResult call() throws Exception {
+            startNanos = System.nanoTime();
+            started = true;
+            return delegate.call();
+        }
+    }
+}
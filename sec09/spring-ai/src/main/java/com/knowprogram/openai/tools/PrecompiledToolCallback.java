@@ -0,0 +1,155 @@
+package com.knowprogram.openai.tools;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.annotation.Tool;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.execution.ToolCallResultConverter;
+import org.springframework.ai.tool.execution.ToolExecutionException;
+import org.springframework.ai.tool.metadata.ToolMetadata;
+import org.springframework.ai.tool.support.ToolDefinitions;
+import org.springframework.ai.tool.support.ToolUtils;
+import org.springframework.ai.util.json.JsonParser;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.util.Assert;
+import org.springframework.util.ReflectionUtils;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * {@link ToolCallback} for a {@link Tool} method that does its reflective work once, when it is
+ * built, instead of on every request and call like {@code .tools(object)} and
+ * {@code MethodToolCallback} do.
+ * <p>
+ * The tool definition with its JSON schema, the metadata and the result converter are computed up
+ * front. Arguments are read from one parse of the tool input with a Jackson reader bound to each
+ * parameter's type, such as {@code TicketRequest}, and the method is invoked through a
+ * {@link MethodHandle} bound to the tool object. As with {@code MethodToolCallback}, a missing
+ * argument is passed as {@code null} and a {@link ToolContext} parameter receives the context.
+ * Unreadable arguments and exceptions thrown by the method are reported to the model as a
+ * {@link ToolExecutionException}; errors are rethrown as they are.
+ */
+public final class PrecompiledToolCallback implements ToolCallback {
+
+    private static final ObjectMapper OBJECT_MAPPER = JsonParser.getObjectMapper();
+
+    private final Method method;
+    private final ToolDefinition toolDefinition;
+    private final ToolMetadata toolMetadata;
+    private final ToolCallResultConverter resultConverter;
+    private final Type returnType;
+    private final MethodHandle invoker;
+    private final String[] parameterNames;
+    private final ObjectReader[] argumentReaders;
+    private final int toolContextIndex;
+
+    private PrecompiledToolCallback(Object toolObject, Method method) {
+        this.method = method;
+        this.toolDefinition = ToolDefinitions.from(method);
+        this.toolMetadata = ToolMetadata.from(method);
+        this.resultConverter = ToolUtils.getToolCallResultConverter(method);
+        this.returnType = method.getGenericReturnType();
+        Parameter[] parameters = method.getParameters();
+        this.parameterNames = new String[parameters.length];
+        this.argumentReaders = new ObjectReader[parameters.length];
+        int contextIndex = -1;
+        for (int i = 0; i < parameters.length; i++) {
+            if (ToolContext.class.isAssignableFrom(parameters[i].getType())) {
+                contextIndex = i;
+            } else {
+                parameterNames[i] = parameters[i].getName();
+                argumentReaders[i] = OBJECT_MAPPER.readerFor(
+                        OBJECT_MAPPER.constructType(parameters[i].getParameterizedType()));
+            }
+        }
+        this.toolContextIndex = contextIndex;
+        try {
+            ReflectionUtils.makeAccessible(method);
+            MethodHandle handle = MethodHandles.lookup().unreflect(method).bindTo(toolObject);
+            this.invoker = handle.asType(handle.type().generic()).asSpreader(Object[].class, parameters.length);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot access tool method " + method, e);
+        }
+    }
+
+    /**
+     * Builds a callback for every {@link Tool} method of {@code toolObject}, sorted by tool name.
+     */
+    public static List<PrecompiledToolCallback> from(Object toolObject) {
+        List<PrecompiledToolCallback> callbacks = new ArrayList<>();
+        for (Method method : ReflectionUtils.getDeclaredMethods(AopUtils.getTargetClass(toolObject))) {
+            if (AnnotationUtils.findAnnotation(method, Tool.class) != null) {
+                callbacks.add(new PrecompiledToolCallback(toolObject, method));
+            }
+        }
+        callbacks.sort(Comparator.comparing(callback -> callback.getToolDefinition().name()));
+        List<String> duplicates = ToolUtils.getDuplicateToolNames(callbacks.toArray(ToolCallback[]::new));
+        if (!duplicates.isEmpty()) {
+            throw new IllegalStateException("Multiple tools with the same name (%s) found in %s"
+                    .formatted(String.join(", ", duplicates), toolObject.getClass().getName()));
+        }
+        return callbacks;
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    @Override
+    public ToolDefinition getToolDefinition() {
+        return toolDefinition;
+    }
+
+    @Override
+    public ToolMetadata getToolMetadata() {
+        return toolMetadata;
+    }
+
+    @Override
+    public String call(String toolInput) {
+        return call(toolInput, null);
+    }
+
+    @Override
+    public String call(String toolInput, ToolContext toolContext) {
+        Assert.hasText(toolInput, "toolInput cannot be null or empty");
+        if (toolContext != null && !toolContext.getContext().isEmpty() && toolContextIndex < 0) {
+            throw new IllegalArgumentException("ToolContext is required by the method as an argument");
+        }
+        Object[] arguments = new Object[argumentReaders.length];
+        try {
+            JsonNode input = OBJECT_MAPPER.readTree(toolInput);
+            for (int i = 0; i < arguments.length; i++) {
+                if (i == toolContextIndex) {
+                    arguments[i] = toolContext;
+                    continue;
+                }
+                JsonNode argument = input.get(parameterNames[i]);
+                arguments[i] = argument == null || argument.isNull() ? null : argumentReaders[i].readValue(argument);
+            }
+        } catch (IOException e) {
+            throw new ToolExecutionException(toolDefinition, e);
+        }
+        Object result;
+        try {
+            result = invoker.invokeExact(arguments);
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new ToolExecutionException(toolDefinition, e);
+        }
+        return resultConverter.convert(result, returnType);
+    }
+}
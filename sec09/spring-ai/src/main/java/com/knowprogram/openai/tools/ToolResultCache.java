@@ -0,0 +1,173 @@
+package com.knowprogram.openai.tools;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.ToolCallbackProvider;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.metadata.ToolMetadata;
+import org.springframework.ai.util.json.JsonParser;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.core.annotation.AnnotationUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the results of {@link CachedTool} methods and drops them when an {@link EvictsCachedTools}
+ * method runs.
+ * <p>
+ * {@link #wrap(Object...)} builds the {@link PrecompiledToolCallback}s of the given {@code @Tool}
+ * objects and wraps the annotated ones. Arguments are compared as JSON trees, so the field order the
+ * model picks does not matter. A result whose call overlapped the call of any evicting tool is not
+ * cached, as it may predate the change.
+ */
+public class ToolResultCache {
+
+    private record Key(String tool, List<Object> context, Object arguments) {
+    }
+
+    private record Entry(String result, Duration ttl) {
+    }
+
+    private final Cache<Key, Entry> cache;
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicInteger evicting = new AtomicInteger();
+    private final MeterRegistry meterRegistry;
+
+    public ToolResultCache(long maximumSize, MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(Expiry.<Key, Entry>writing((key, entry) -> entry.ttl()))
+                .recordStats()
+                .build();
+        this.meterRegistry = meterRegistry;
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "tool-results");
+    }
+
+    public ToolCallbackProvider wrap(Object... toolObjects) {
+        List<ToolCallback> callbacks = new ArrayList<>();
+        for (Object toolObject : toolObjects) {
+            for (PrecompiledToolCallback callback : PrecompiledToolCallback.from(toolObject)) {
+                CachedTool cached = AnnotationUtils.findAnnotation(callback.getMethod(), CachedTool.class);
+                EvictsCachedTools evicts = AnnotationUtils.findAnnotation(callback.getMethod(), EvictsCachedTools.class);
+                if (cached != null) {
+                    callbacks.add(new CachingToolCallback(callback, cached));
+                } else if (evicts != null) {
+                    callbacks.add(new EvictingToolCallback(callback, evicts));
+                } else {
+                    callbacks.add(callback);
+                }
+            }
+        }
+        return ToolCallbackProvider.from(callbacks);
+    }
+
+    private static List<Object> context(ToolContext toolContext, String[] contextKeys) {
+        List<Object> values = new ArrayList<>(contextKeys.length);
+        for (String contextKey : contextKeys) {
+            values.add(toolContext == null ? null : toolContext.getContext().get(contextKey));
+        }
+        return values;
+    }
+
+    private static Object arguments(String toolInput) {
+        try {
+            return JsonParser.getObjectMapper().readTree(toolInput);
+        } catch (JsonProcessingException e) {
+            return toolInput;
+        }
+    }
+
+    private abstract static class DelegatingToolCallback implements ToolCallback {
+        final ToolCallback delegate;
+
+        DelegatingToolCallback(ToolCallback delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public ToolDefinition getToolDefinition() {
+            return delegate.getToolDefinition();
+        }
+
+        @Override
+        public ToolMetadata getToolMetadata() {
+            return delegate.getToolMetadata();
+        }
+
+        @Override
+        public String call(String toolInput) {
+            return call(toolInput, null);
+        }
+    }
+
+    private class CachingToolCallback extends DelegatingToolCallback {
+        private final String[] contextKeys;
+        private final Duration ttl;
+        private final Counter hits;
+        private final Counter misses;
+
+        CachingToolCallback(ToolCallback delegate, CachedTool cached) {
+            super(delegate);
+            this.contextKeys = cached.contextKeys();
+            this.ttl = DurationStyle.detectAndParse(cached.ttl());
+            String tool = delegate.getToolDefinition().name();
+            this.hits = Counter.builder("tool.cache.requests").tag("tool", tool).tag("result", "hit")
+                    .register(meterRegistry);
+            this.misses = Counter.builder("tool.cache.requests").tag("tool", tool).tag("result", "miss")
+                    .register(meterRegistry);
+        }
+
+        @Override
+        public String call(String toolInput, ToolContext toolContext) {
+            Key key = new Key(getToolDefinition().name(), context(toolContext, contextKeys), arguments(toolInput));
+            Entry entry = cache.getIfPresent(key);
+            if (entry != null) {
+                hits.increment();
+                return entry.result();
+            }
+            misses.increment();
+            long generation = evictions.get();
+            String result = toolContext == null ? delegate.call(toolInput) : delegate.call(toolInput, toolContext);
+            if (evicting.get() == 0 && evictions.get() == generation) {
+                cache.put(key, new Entry(result, ttl));
+            }
+            return result;
+        }
+    }
+
+    private class EvictingToolCallback extends DelegatingToolCallback {
+        private final List<String> tools;
+        private final String[] contextKeys;
+
+        EvictingToolCallback(ToolCallback delegate, EvictsCachedTools evicts) {
+            super(delegate);
+            this.tools = List.of(evicts.value());
+            this.contextKeys = evicts.contextKeys();
+        }
+
+        @Override
+        public String call(String toolInput, ToolContext toolContext) {
+            evicting.incrementAndGet();
+            try {
+                return toolContext == null ? delegate.call(toolInput) : delegate.call(toolInput, toolContext);
+            } finally {
+                List<Object> context = context(toolContext, contextKeys);
+                cache.asMap().keySet().removeIf(key -> tools.contains(key.tool())
+                        && (contextKeys.length == 0 || key.context().equals(context)));
+                evictions.incrementAndGet();
+                evicting.decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.knowprogram.openai.vectorstore;
+
+import org.springframework.ai.vectorstore.filter.Filter;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.IntPredicate;
+
+/**
+ * Evaluates a portable {@link Filter.Expression} against the metadata of a document. Numbers are
+ * compared by value regardless of their boxed type; everything else by {@code equals} or, for
+ * ordering, by its string form. An ordering comparison with a missing key, a {@code null} or a
+ * number on only one side does not match, like a range condition in Qdrant.
+ */
+final class FilterExpressionMatcher {
+
+    private FilterExpressionMatcher() {
+    }
+
+    static boolean matches(Filter.Expression expression, Map<String, Object> metadata) {
+        return switch (expression.type()) {
+            case AND -> matches(operand(expression.left()), metadata) && matches(operand(expression.right()), metadata);
+            case OR -> matches(operand(expression.left()), metadata) || matches(operand(expression.right()), metadata);
+            case NOT -> !matches(operand(expression.left()), metadata);
+            case EQ -> equal(value(expression.left(), metadata), literal(expression.right()));
+            case NE -> !equal(value(expression.left(), metadata), literal(expression.right()));
+            case GT -> compare(value(expression.left(), metadata), literal(expression.right()), c -> c > 0);
+            case GTE -> compare(value(expression.left(), metadata), literal(expression.right()), c -> c >= 0);
+            case LT -> compare(value(expression.left(), metadata), literal(expression.right()), c -> c < 0);
+            case LTE -> compare(value(expression.left(), metadata), literal(expression.right()), c -> c <= 0);
+            case IN -> contains(literal(expression.right()), value(expression.left(), metadata));
+            case NIN -> !contains(literal(expression.right()), value(expression.left(), metadata));
+        };
+    }
+
+    private static Filter.Expression operand(Filter.Operand operand) {
+        if (operand instanceof Filter.Group group) {
+            return group.content();
+        }
+        if (operand instanceof Filter.Expression expression) {
+            return expression;
+        }
+        throw new IllegalArgumentException("Expected an expression but got " + operand);
+    }
+
+    private static Object value(Filter.Operand operand, Map<String, Object> metadata) {
+        if (operand instanceof Filter.Key key) {
+            String name = key.key();
+            // keys with special characters are quoted by the filter expression parser
+            if (name.length() > 1 && (name.startsWith("\"") && name.endsWith("\"")
+                    || name.startsWith("'") && name.endsWith("'"))) {
+                name = name.substring(1, name.length() - 1);
+            }
+            return metadata.get(name);
+        }
+        throw new IllegalArgumentException("Expected a metadata key but got " + operand);
+    }
+
+    private static Object literal(Filter.Operand operand) {
+        if (operand instanceof Filter.Value value) {
+            return value.value();
+        }
+        throw new IllegalArgumentException("Expected a value but got " + operand);
+    }
+
+    private static boolean equal(Object actual, Object expected) {
+        if (actual instanceof Number a && expected instanceof Number b) {
+            return Double.compare(a.doubleValue(), b.doubleValue()) == 0;
+        }
+        return Objects.equals(actual, expected);
+    }
+
+    private static boolean compare(Object actual, Object expected, IntPredicate test) {
+        if (actual instanceof Number a && expected instanceof Number b) {
+            double x = a.doubleValue();
+            double y = b.doubleValue();
+            return !Double.isNaN(x) && !Double.isNaN(y) && test.test(Double.compare(x, y));
+        }
+        if (actual == null || expected == null || actual instanceof Number || expected instanceof Number) {
+            return false;
+        }
+        return test.test(actual.toString().compareTo(expected.toString()));
+    }
+
+    private static boolean contains(Object values, Object actual) {
+        Collection<?> candidates = values instanceof Collection<?> collection ? collection : List.of(values);
+        for (Object candidate : candidates) {
+            if (equal(actual, candidate)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
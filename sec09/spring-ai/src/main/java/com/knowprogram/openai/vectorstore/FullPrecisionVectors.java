@@ -0,0 +1,89 @@
+package com.knowprogram.openai.vectorstore;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Float32 vectors kept on disk at {@code node * dimensions * 4}, for re-scoring the candidates of a
+ * quantized first-pass search. Only the few re-ranked vectors per query are read, so the OS page
+ * cache rather than the heap holds the full-precision copy.
+ */
+class FullPrecisionVectors implements AutoCloseable {
+
+    private final FileChannel channel;
+    private final int dimensions;
+
+    FullPrecisionVectors(Path file, int dimensions) {
+        this.dimensions = dimensions;
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    void write(int node, float[] vector) {
+        ByteBuffer buffer = ByteBuffer.allocate(dimensions * Float.BYTES);
+        buffer.asFloatBuffer().put(vector);
+        try {
+            long position = (long) node * buffer.capacity();
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    float[] read(int node) {
+        float[] vector = new float[dimensions];
+        load(node).asFloatBuffer().get(vector);
+        return vector;
+    }
+
+    float similarity(float[] query, int node) {
+        ByteBuffer buffer = load(node);
+        float sum = 0;
+        for (int i = 0; i < dimensions; i++) {
+            sum += query[i] * buffer.getFloat();
+        }
+        return sum;
+    }
+
+    private ByteBuffer load(int node) {
+        ByteBuffer buffer = ByteBuffer.allocate(dimensions * Float.BYTES);
+        try {
+            long position = (long) node * buffer.capacity();
+            while (buffer.hasRemaining()) {
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    throw new IOException("Vector of node " + node + " is missing");
+                }
+                position += read;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.flip();
+    }
+
+    void force() {
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,298 @@
+package com.knowprogram.openai.vectorstore;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+import java.util.function.IntPredicate;
+
+/**
+ * Hierarchical navigable small world graph over unit-length vectors, scored by dot product
+ * (cosine similarity).
+ * <p>
+ * Vectors live in a {@link VectorStorage} indexed by node, which may hold them quantized, and every
+ * node keeps one neighbour array per layer whose first slot holds the neighbour count. Not
+ * thread-safe; {@link HnswVectorStore} guards it with a read/write lock.
+ */
+class HnswIndex {
+
+    record Scored(int node, float score) {
+    }
+
+    private static final Comparator<Scored> BEST_FIRST = Comparator.comparingDouble(Scored::score).reversed();
+    private static final Comparator<Scored> WORST_FIRST = Comparator.comparingDouble(Scored::score);
+
+    private final int dimensions;
+    private final int m;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final SplittableRandom random = new SplittableRandom(42);
+
+    private final VectorStorage vectors;
+    private int[][][] neighbors;
+    private int size;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    HnswIndex(int dimensions, int m, int efConstruction, Quantization quantization) {
+        this(m, efConstruction, VectorStorage.create(quantization, dimensions));
+    }
+
+    private HnswIndex(int m, int efConstruction, VectorStorage vectors) {
+        this.dimensions = vectors.dimensions;
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1 / Math.log(m);
+        this.vectors = vectors;
+        this.neighbors = new int[16][][];
+    }
+
+    int dimensions() {
+        return dimensions;
+    }
+
+    int size() {
+        return size;
+    }
+
+    Quantization quantization() {
+        return vectors.quantization();
+    }
+
+    int add(float[] vector) {
+        int node = size;
+        ensureCapacity(node + 1);
+        vectors.set(node, vector);
+        int level = (int) (-Math.log(1 - random.nextDouble()) * levelMultiplier);
+        neighbors[node] = new int[level + 1][];
+        for (int l = 0; l <= level; l++) {
+            neighbors[node][l] = new int[maxConnections(l) + 1];
+        }
+        size++;
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return node;
+        }
+
+        int current = entryPoint;
+        for (int l = maxLevel; l > level; l--) {
+            current = greedy(vector, current, l);
+        }
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            List<Scored> candidates = searchLayer(vector, current, efConstruction, l, candidate -> true);
+            for (Scored neighbour : selectNeighbours(candidates, m)) {
+                connect(node, neighbour.node(), l);
+                connect(neighbour.node(), node, l);
+            }
+            current = candidates.get(0).node();
+        }
+        if (level > maxLevel) {
+            maxLevel = level;
+            entryPoint = node;
+        }
+        return node;
+    }
+
+    /**
+     * The {@code k} nodes accepted by {@code accept} that are most similar to {@code query}, best
+     * first. Rejected nodes are still traversed, so a selective filter degrades towards a full scan
+     * instead of missing results.
+     */
+    List<Scored> search(float[] query, int k, int ef, IntPredicate accept) {
+        if (entryPoint < 0) {
+            return List.of();
+        }
+        int current = entryPoint;
+        for (int l = maxLevel; l > 0; l--) {
+            current = greedy(query, current, l);
+        }
+        List<Scored> results = searchLayer(query, current, Math.max(ef, k), 0, accept);
+        return results.size() > k ? results.subList(0, k) : results;
+    }
+
+    float[] vector(int node) {
+        return vectors.get(node);
+    }
+
+    float similarity(float[] query, int node) {
+        return vectors.similarity(query, node);
+    }
+
+    private float similarity(int a, int b) {
+        return vectors.similarity(a, b);
+    }
+
+    private int greedy(float[] query, int start, int level) {
+        int current = start;
+        float best = similarity(query, current);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            int[] links = neighbors[current][level];
+            for (int i = 1; i <= links[0]; i++) {
+                float score = similarity(query, links[i]);
+                if (score > best) {
+                    best = score;
+                    current = links[i];
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    private List<Scored> searchLayer(float[] query, int start, int ef, int level, IntPredicate accept) {
+        BitSet visited = new BitSet(size);
+        PriorityQueue<Scored> candidates = new PriorityQueue<>(BEST_FIRST);
+        PriorityQueue<Scored> results = new PriorityQueue<>(WORST_FIRST);
+        Scored first = new Scored(start, similarity(query, start));
+        visited.set(start);
+        candidates.add(first);
+        if (accept.test(start)) {
+            results.add(first);
+        }
+        while (!candidates.isEmpty()) {
+            Scored candidate = candidates.poll();
+            if (results.size() >= ef && candidate.score() < results.peek().score()) {
+                break;
+            }
+            int[] links = neighbors[candidate.node()].length > level ? neighbors[candidate.node()][level] : new int[1];
+            for (int i = 1; i <= links[0]; i++) {
+                int next = links[i];
+                if (visited.get(next)) {
+                    continue;
+                }
+                visited.set(next);
+                Scored scored = new Scored(next, similarity(query, next));
+                if (results.size() < ef || scored.score() > results.peek().score()) {
+                    candidates.add(scored);
+                    if (accept.test(next)) {
+                        results.add(scored);
+                        if (results.size() > ef) {
+                            results.poll();
+                        }
+                    }
+                }
+            }
+        }
+        List<Scored> sorted = new ArrayList<>(results);
+        sorted.sort(BEST_FIRST);
+        return sorted;
+    }
+
+    /**
+     * Keeps a candidate only if it is closer to the new node than to any neighbour already kept,
+     * which spreads the links across directions, then tops up with the closest of the rest.
+     */
+    private List<Scored> selectNeighbours(List<Scored> candidates, int limit) {
+        List<Scored> selected = new ArrayList<>(limit);
+        List<Scored> skipped = new ArrayList<>();
+        for (Scored candidate : candidates) {
+            if (selected.size() >= limit) {
+                break;
+            }
+            boolean diverse = true;
+            for (Scored kept : selected) {
+                if (similarity(candidate.node(), kept.node()) > candidate.score()) {
+                    diverse = false;
+                    break;
+                }
+            }
+            (diverse ? selected : skipped).add(candidate);
+        }
+        for (int i = 0; i < skipped.size() && selected.size() < limit; i++) {
+            selected.add(skipped.get(i));
+        }
+        return selected;
+    }
+
+    private void connect(int from, int to, int level) {
+        int[] links = neighbors[from][level];
+        int count = links[0];
+        if (count < links.length - 1) {
+            links[count + 1] = to;
+            links[0] = count + 1;
+            return;
+        }
+        List<Scored> candidates = new ArrayList<>(count + 1);
+        for (int i = 1; i <= count; i++) {
+            candidates.add(new Scored(links[i], similarity(from, links[i])));
+        }
+        candidates.add(new Scored(to, similarity(from, to)));
+        candidates.sort(BEST_FIRST);
+        List<Scored> kept = selectNeighbours(candidates, links.length - 1);
+        links[0] = kept.size();
+        for (int i = 0; i < kept.size(); i++) {
+            links[i + 1] = kept.get(i).node();
+        }
+    }
+
+    private int maxConnections(int level) {
+        return level == 0 ? 2 * m : m;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (neighbors.length < capacity) {
+            int grown = Math.max(capacity, neighbors.length * 2);
+            neighbors = Arrays.copyOf(neighbors, grown);
+        }
+        vectors.ensureCapacity(capacity);
+    }
+
+    long serializedSize() {
+        long bytes = 6L * Integer.BYTES + vectors.serializedSize(size);
+        for (int node = 0; node < size; node++) {
+            bytes += Integer.BYTES;
+            for (int[] links : neighbors[node]) {
+                bytes += (long) (links[0] + 1) * Integer.BYTES;
+            }
+        }
+        return bytes;
+    }
+
+    void writeTo(ByteBuffer buffer) {
+        buffer.putInt(dimensions).putInt(m).putInt(efConstruction).putInt(size).putInt(entryPoint).putInt(maxLevel);
+        vectors.writeTo(buffer, size);
+        for (int node = 0; node < size; node++) {
+            buffer.putInt(neighbors[node].length);
+            for (int[] links : neighbors[node]) {
+                buffer.putInt(links[0]);
+                for (int i = 1; i <= links[0]; i++) {
+                    buffer.putInt(links[i]);
+                }
+            }
+        }
+    }
+
+    static HnswIndex readFrom(ByteBuffer buffer) {
+        int dimensions = buffer.getInt();
+        int m = buffer.getInt();
+        int efConstruction = buffer.getInt();
+        int size = buffer.getInt();
+        int entryPoint = buffer.getInt();
+        int maxLevel = buffer.getInt();
+        HnswIndex index = new HnswIndex(m, efConstruction, VectorStorage.readFrom(buffer, dimensions, size));
+        index.entryPoint = entryPoint;
+        index.maxLevel = maxLevel;
+        index.ensureCapacity(size);
+        for (int node = 0; node < size; node++) {
+            int levels = buffer.getInt();
+            index.neighbors[node] = new int[levels][];
+            for (int l = 0; l < levels; l++) {
+                int[] links = new int[index.maxConnections(l) + 1];
+                links[0] = buffer.getInt();
+                for (int i = 1; i <= links[0]; i++) {
+                    links[i] = buffer.getInt();
+                }
+                index.neighbors[node][l] = links;
+            }
+        }
+        index.size = size;
+        return index;
+    }
+}
@@ -0,0 +1,465 @@
+package com.knowprogram.openai.vectorstore;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.BatchingStrategy;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptionsBuilder;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+
+/**
+ * In-process {@link VectorStore} over an {@link HnswIndex}, for corpora small enough to keep in
+ * memory.
+ * <p>
+ * Re-adding an id replaces the document; deleted documents stay in the graph as tombstones that
+ * are skipped by searches. Once tombstones make up {@link #COMPACT_RATIO} of the nodes, the graph
+ * is rebuilt from the live vectors under the write lock, so searches wait for the rebuild. The
+ * index and documents are written to a memory-mapped snapshot file every
+ * {@code snapshotIntervalMillis} when something changed and when the bean is destroyed. On startup
+ * the snapshot is mapped and loaded as is, without re-embedding or rebuilding the graph.
+ * <p>
+ * With a {@link Quantization} other than {@code NONE}, the graph holds quantized vectors and the
+ * float32 originals go to a {@link FullPrecisionVectors} file next to the snapshot, one file per
+ * compaction generation so a snapshot always matches the file it was taken with. A search then
+ * fetches {@code topK * rerankFactor} candidates from the graph and re-scores them exactly before
+ * applying {@code topK} and the similarity threshold.
+ * <p>
+ * Snapshot layout: {@code [int magic][int version][int generation][long indexBytes][index]
+ * [int documentsBytes][documents as JSON][int deletedWords][long[] deleted bitmap]}.
+ */
+public class HnswVectorStore implements VectorStore, DisposableBean {
+    private static final Logger logger = LoggerFactory.getLogger(HnswVectorStore.class);
+
+    private static final int MAGIC = 0x484E5357;
+    private static final int VERSION = 2;
+    private static final double COMPACT_RATIO = 0.3;
+    public static final String DISTANCE = "distance";
+
+    record StoredDocument(String id, String text, Map<String, Object> metadata) {
+    }
+
+    private final EmbeddingModel embeddingModel;
+    private final BatchingStrategy batchingStrategy;
+    private final ObjectMapper objectMapper;
+    private final Path snapshotFile;
+    private final int m;
+    private final int efConstruction;
+    private final int efSearch;
+    private final Quantization quantization;
+    private final int rerankFactor;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ScheduledExecutorService snapshotter = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "hnsw-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private HnswIndex index;
+    private FullPrecisionVectors fullPrecision;
+    private List<StoredDocument> documents = new ArrayList<>();
+    private Map<String, Integer> nodesById = new HashMap<>();
+    private BitSet deleted = new BitSet();
+    private int generation;
+    private int snapshotGeneration;
+    private volatile boolean dirty;
+
+    public HnswVectorStore(EmbeddingModel embeddingModel, BatchingStrategy batchingStrategy, ObjectMapper objectMapper,
+                           Path snapshotFile, int m, int efConstruction, int efSearch, Quantization quantization,
+                           int rerankFactor, long snapshotIntervalMillis) {
+        this.embeddingModel = embeddingModel;
+        this.batchingStrategy = batchingStrategy;
+        this.objectMapper = objectMapper;
+        this.snapshotFile = snapshotFile;
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+        this.quantization = quantization;
+        this.rerankFactor = rerankFactor;
+        load();
+        snapshotter.scheduleWithFixedDelay(this::snapshotIfDirty, snapshotIntervalMillis, snapshotIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void add(List<Document> documents) {
+        if (documents.isEmpty()) {
+            return;
+        }
+        List<float[]> embeddings = embeddingModel.embed(documents, EmbeddingOptionsBuilder.builder().build(),
+                batchingStrategy);
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < documents.size(); i++) {
+                Document document = documents.get(i);
+                float[] vector = normalize(embeddings.get(i));
+                if (index == null) {
+                    index = new HnswIndex(vector.length, m, efConstruction, quantization);
+                    openFullPrecision();
+                }
+                Integer previous = nodesById.get(document.getId());
+                if (previous != null) {
+                    deleted.set(previous);
+                }
+                int node = index.add(vector);
+                if (fullPrecision != null) {
+                    fullPrecision.write(node, vector);
+                }
+                this.documents.add(new StoredDocument(document.getId(), document.getText(),
+                        new HashMap<>(document.getMetadata())));
+                nodesById.put(document.getId(), node);
+            }
+            dirty = true;
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void delete(List<String> idList) {
+        lock.writeLock().lock();
+        try {
+            for (String id : idList) {
+                Integer node = nodesById.remove(id);
+                if (node != null) {
+                    deleted.set(node);
+                    dirty = true;
+                }
+            }
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void delete(Filter.Expression filterExpression) {
+        List<String> ids = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            nodesById.forEach((id, node) -> {
+                if (FilterExpressionMatcher.matches(filterExpression, documents.get(node).metadata())) {
+                    ids.add(id);
+                }
+            });
+        } finally {
+            lock.readLock().unlock();
+        }
+        delete(ids);
+    }
+
+    @Override
+    public List<Document> similaritySearch(SearchRequest request) {
+        float[] query = normalize(embeddingModel.embed(request.getQuery()));
+        lock.readLock().lock();
+        try {
+            if (index == null) {
+                return List.of();
+            }
+            Filter.Expression filter = request.getFilterExpression();
+            IntPredicate accept = node -> !deleted.get(node)
+                    && (filter == null || FilterExpressionMatcher.matches(filter, documents.get(node).metadata()));
+            List<HnswIndex.Scored> hits;
+            if (fullPrecision == null) {
+                hits = index.search(query, request.getTopK(), efSearch, accept);
+            } else {
+                int candidates = request.getTopK() * rerankFactor;
+                hits = new ArrayList<>();
+                for (HnswIndex.Scored candidate : index.search(query, candidates, Math.max(efSearch, candidates), accept)) {
+                    hits.add(new HnswIndex.Scored(candidate.node(), fullPrecision.similarity(query, candidate.node())));
+                }
+                hits.sort(Comparator.comparingDouble(HnswIndex.Scored::score).reversed());
+                hits = hits.subList(0, Math.min(request.getTopK(), hits.size()));
+            }
+            List<Document> results = new ArrayList<>();
+            for (HnswIndex.Scored scored : hits) {
+                if (scored.score() < request.getSimilarityThreshold()) {
+                    break;
+                }
+                results.add(toDocument(documents.get(scored.node()), scored.score()));
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The ids out of {@code ids} that are stored and not deleted.
+     */
+    public Set<String> existingIds(Collection<String> ids) {
+        lock.readLock().lock();
+        try {
+            Set<String> existing = new HashSet<>();
+            for (String id : ids) {
+                if (nodesById.containsKey(id)) {
+                    existing.add(id);
+                }
+            }
+            return existing;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Merges {@code metadataById} into the metadata of the stored documents, without embedding them again.
+     */
+    public void updateMetadata(Map<String, Map<String, Object>> metadataById) {
+        lock.writeLock().lock();
+        try {
+            metadataById.forEach((id, metadata) -> {
+                Integer node = nodesById.get(id);
+                if (node != null) {
+                    StoredDocument stored = documents.get(node);
+                    Map<String, Object> merged = new HashMap<>(stored.metadata());
+                    merged.putAll(metadata);
+                    documents.set(node, new StoredDocument(stored.id(), stored.text(), merged));
+                    dirty = true;
+                }
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "HnswVectorStore";
+    }
+
+    private static Document toDocument(StoredDocument stored, float score) {
+        Map<String, Object> metadata = new HashMap<>(stored.metadata());
+        metadata.put(DISTANCE, 1 - score);
+        return Document.builder().id(stored.id()).text(stored.text()).metadata(metadata).score((double) score).build();
+    }
+
+    static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        norm = Math.sqrt(norm);
+        float[] normalized = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = norm == 0 ? 0 : (float) (vector[i] / norm);
+        }
+        return normalized;
+    }
+
+    /**
+     * Rebuilds the graph from the vectors of the live nodes. Called with the write lock held.
+     */
+    private void compactIfNeeded() {
+        if (index == null || deleted.cardinality() <= documents.size() * COMPACT_RATIO) {
+            return;
+        }
+        long start = System.nanoTime();
+        int nextGeneration = fullPrecision != null ? generation + 1 : generation;
+        HnswIndex rebuilt = new HnswIndex(index.dimensions(), m, efConstruction, quantization);
+        FullPrecisionVectors rebuiltFullPrecision = fullPrecision != null
+                ? new FullPrecisionVectors(fullPrecisionFile(nextGeneration), index.dimensions())
+                : null;
+        List<StoredDocument> liveDocuments = new ArrayList<>(nodesById.size());
+        Map<String, Integer> liveNodes = new HashMap<>();
+        try {
+            for (int node = 0; node < documents.size(); node++) {
+                if (deleted.get(node)) {
+                    continue;
+                }
+                float[] vector = fullPrecision != null ? fullPrecision.read(node) : index.vector(node);
+                int rebuiltNode = rebuilt.add(vector);
+                if (rebuiltFullPrecision != null) {
+                    rebuiltFullPrecision.write(rebuiltNode, vector);
+                }
+                liveDocuments.add(documents.get(node));
+                liveNodes.put(documents.get(node).id(), rebuiltNode);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Failed to compact HNSW index, keeping {} tombstones", deleted.cardinality(), e);
+            discard(rebuiltFullPrecision, nextGeneration);
+            return;
+        }
+        int removed = deleted.cardinality();
+        index = rebuilt;
+        documents = liveDocuments;
+        nodesById = liveNodes;
+        deleted = new BitSet();
+        if (rebuiltFullPrecision != null) {
+            // the file of the snapshot on disk stays until the next snapshot replaces it
+            discard(fullPrecision, generation == snapshotGeneration ? -1 : generation);
+            fullPrecision = rebuiltFullPrecision;
+            generation = nextGeneration;
+        }
+        dirty = true;
+        logger.info("Compacted HNSW index to {} documents, dropping {} tombstones in {} ms", liveNodes.size(), removed,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * Closes {@code vectors} and deletes the file of {@code generation}, unless it is negative.
+     */
+    private void discard(FullPrecisionVectors vectors, int generation) {
+        try {
+            if (vectors != null) {
+                vectors.close();
+            }
+            if (generation >= 0) {
+                Files.deleteIfExists(fullPrecisionFile(generation));
+            }
+        } catch (IOException e) {
+            logger.warn("Could not remove full-precision vectors of generation {}", generation, e);
+        }
+    }
+
+    private void snapshotIfDirty() {
+        if (dirty) {
+            try {
+                snapshot();
+            } catch (RuntimeException e) {
+                logger.warn("Failed to write HNSW snapshot {}", snapshotFile, e);
+            }
+        }
+    }
+
+    public void snapshot() {
+        lock.readLock().lock();
+        try {
+            dirty = false;
+            if (index == null) {
+                return;
+            }
+            if (fullPrecision != null) {
+                fullPrecision.force();
+            }
+            byte[] documentBytes = objectMapper.writeValueAsBytes(documents);
+            long[] deletedWords = deleted.toLongArray();
+            long indexBytes = index.serializedSize();
+            long total = 3L * Integer.BYTES + Long.BYTES + indexBytes + Integer.BYTES + documentBytes.length
+                    + Integer.BYTES + (long) deletedWords.length * Long.BYTES;
+            Files.createDirectories(snapshotFile.toAbsolutePath().getParent());
+            Path temp = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, total);
+                buffer.putInt(MAGIC).putInt(VERSION).putInt(generation).putLong(indexBytes);
+                index.writeTo(buffer);
+                buffer.putInt(documentBytes.length).put(documentBytes);
+                buffer.putInt(deletedWords.length);
+                for (long word : deletedWords) {
+                    buffer.putLong(word);
+                }
+                buffer.force();
+            }
+            Files.move(temp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            if (snapshotGeneration != generation) {
+                discard(null, snapshotGeneration);
+                snapshotGeneration = generation;
+            }
+            logger.debug("Wrote HNSW snapshot of {} documents to {}", documents.size(), snapshotFile);
+        } catch (IOException e) {
+            dirty = true;
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void load() {
+        if (!Files.exists(snapshotFile)) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(snapshotFile, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int version = buffer.getInt() == MAGIC ? buffer.getInt() : -1;
+            if (version != VERSION) {
+                logger.warn("Ignoring HNSW snapshot {} with an unknown format", snapshotFile);
+                return;
+            }
+            int loadedGeneration = buffer.getInt();
+            buffer.getLong();
+            HnswIndex loadedIndex = HnswIndex.readFrom(buffer);
+            if (loadedIndex.quantization() != quantization) {
+                logger.warn("Ignoring HNSW snapshot {} built with {} quantization, {} is configured",
+                        snapshotFile, loadedIndex.quantization(), quantization);
+                return;
+            }
+            byte[] documentBytes = new byte[buffer.getInt()];
+            buffer.get(documentBytes);
+            List<StoredDocument> loadedDocuments = objectMapper.readValue(documentBytes, new TypeReference<>() {
+            });
+            long[] deletedWords = new long[buffer.getInt()];
+            for (int i = 0; i < deletedWords.length; i++) {
+                deletedWords[i] = buffer.getLong();
+            }
+            BitSet loadedDeleted = BitSet.valueOf(deletedWords);
+            Map<String, Integer> loadedNodes = new HashMap<>();
+            for (int node = 0; node < loadedDocuments.size(); node++) {
+                if (!loadedDeleted.get(node)) {
+                    loadedNodes.put(loadedDocuments.get(node).id(), node);
+                }
+            }
+            index = loadedIndex;
+            generation = loadedGeneration;
+            snapshotGeneration = loadedGeneration;
+            openFullPrecision();
+            documents = new ArrayList<>(loadedDocuments);
+            deleted = loadedDeleted;
+            nodesById = loadedNodes;
+            logger.info("Loaded HNSW snapshot of {} documents from {}", loadedNodes.size(), snapshotFile);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Could not load HNSW snapshot {}, starting empty", snapshotFile, e);
+        }
+    }
+
+    private void openFullPrecision() {
+        if (quantization != Quantization.NONE) {
+            fullPrecision = new FullPrecisionVectors(fullPrecisionFile(generation), index.dimensions());
+        }
+    }
+
+    private Path fullPrecisionFile(int generation) {
+        String suffix = generation == 0 ? ".f32" : "." + generation + ".f32";
+        return snapshotFile.resolveSibling(snapshotFile.getFileName() + suffix);
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        snapshotter.shutdownNow();
+        snapshotIfDirty();
+        if (fullPrecision != null) {
+            fullPrecision.close();
+        }
+    }
+}
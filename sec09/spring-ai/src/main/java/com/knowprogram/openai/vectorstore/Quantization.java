@@ -0,0 +1,19 @@
+package com.knowprogram.openai.vectorstore;
+
+/**
+ * Encoding of the vectors {@link HnswVectorStore} keeps in memory for the first-pass graph search.
+ */
+public enum Quantization {
+    /**
+     * Full float32 vectors, 4 bytes per dimension.
+     */
+    NONE,
+    /**
+     * Symmetric int8 scalar quantization with one float scale per vector, about 1 byte per dimension.
+     */
+    INT8,
+    /**
+     * One sign bit per dimension, 1/8 byte per dimension.
+     */
+    BINARY
+}
@@ -0,0 +1,293 @@
+package com.knowprogram.openai.vectorstore;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * In-memory vectors of an {@link HnswIndex}, addressed by node, in one of the {@link Quantization}
+ * encodings. Similarities are only meant to rank nodes against each other; quantized encodings
+ * approximate the dot product of the original unit vectors.
+ */
+abstract class VectorStorage {
+
+    protected final int dimensions;
+    protected int capacity;
+
+    VectorStorage(int dimensions, int capacity) {
+        this.dimensions = dimensions;
+        this.capacity = capacity;
+    }
+
+    static VectorStorage create(Quantization quantization, int dimensions) {
+        return switch (quantization) {
+            case NONE -> new Float32(dimensions, 16);
+            case INT8 -> new Int8(dimensions, 16);
+            case BINARY -> new Binary(dimensions, 16);
+        };
+    }
+
+    abstract Quantization quantization();
+
+    abstract void set(int node, float[] vector);
+
+    abstract float similarity(float[] query, int node);
+
+    /**
+     * The vector of {@code node} as it was set; only the unquantized encoding can give it back.
+     */
+    float[] get(int node) {
+        throw new UnsupportedOperationException(quantization() + " vectors cannot be read back");
+    }
+
+    abstract float similarity(int a, int b);
+
+    abstract int bytesPerVector();
+
+    abstract void grow(int capacity);
+
+    abstract void write(ByteBuffer buffer, int size);
+
+    abstract void read(ByteBuffer buffer, int size);
+
+    void ensureCapacity(int required) {
+        if (capacity < required) {
+            capacity = Math.max(required, capacity * 2);
+            grow(capacity);
+        }
+    }
+
+    long serializedSize(int size) {
+        return Integer.BYTES + (long) size * bytesPerVector();
+    }
+
+    void writeTo(ByteBuffer buffer, int size) {
+        buffer.putInt(quantization().ordinal());
+        write(buffer, size);
+    }
+
+    static VectorStorage readFrom(ByteBuffer buffer, int dimensions, int size) {
+        VectorStorage storage = create(Quantization.values()[buffer.getInt()], dimensions);
+        storage.ensureCapacity(size);
+        storage.read(buffer, size);
+        return storage;
+    }
+
+    static final class Float32 extends VectorStorage {
+        private float[] values;
+
+        Float32(int dimensions, int capacity) {
+            super(dimensions, capacity);
+            this.values = new float[dimensions * capacity];
+        }
+
+        @Override
+        Quantization quantization() {
+            return Quantization.NONE;
+        }
+
+        @Override
+        void set(int node, float[] vector) {
+            System.arraycopy(vector, 0, values, node * dimensions, dimensions);
+        }
+
+        @Override
+        float[] get(int node) {
+            return Arrays.copyOfRange(values, node * dimensions, (node + 1) * dimensions);
+        }
+
+        @Override
+        float similarity(float[] query, int node) {
+            float sum = 0;
+            int offset = node * dimensions;
+            for (int i = 0; i < dimensions; i++) {
+                sum += query[i] * values[offset + i];
+            }
+            return sum;
+        }
+
+        @Override
+        float similarity(int a, int b) {
+            float sum = 0;
+            int offsetA = a * dimensions;
+            int offsetB = b * dimensions;
+            for (int i = 0; i < dimensions; i++) {
+                sum += values[offsetA + i] * values[offsetB + i];
+            }
+            return sum;
+        }
+
+        @Override
+        int bytesPerVector() {
+            return dimensions * Float.BYTES;
+        }
+
+        @Override
+        void grow(int capacity) {
+            values = Arrays.copyOf(values, capacity * dimensions);
+        }
+
+        @Override
+        void write(ByteBuffer buffer, int size) {
+            buffer.asFloatBuffer().put(values, 0, size * dimensions);
+            buffer.position(buffer.position() + size * dimensions * Float.BYTES);
+        }
+
+        @Override
+        void read(ByteBuffer buffer, int size) {
+            buffer.asFloatBuffer().get(values, 0, size * dimensions);
+            buffer.position(buffer.position() + size * dimensions * Float.BYTES);
+        }
+    }
+
+    static final class Int8 extends VectorStorage {
+        private byte[] values;
+        private float[] scales;
+
+        Int8(int dimensions, int capacity) {
+            super(dimensions, capacity);
+            this.values = new byte[dimensions * capacity];
+            this.scales = new float[capacity];
+        }
+
+        @Override
+        Quantization quantization() {
+            return Quantization.INT8;
+        }
+
+        @Override
+        void set(int node, float[] vector) {
+            float max = 0;
+            for (float value : vector) {
+                max = Math.max(max, Math.abs(value));
+            }
+            float scale = max == 0 ? 1 : max / 127;
+            int offset = node * dimensions;
+            for (int i = 0; i < dimensions; i++) {
+                values[offset + i] = (byte) Math.round(vector[i] / scale);
+            }
+            scales[node] = scale;
+        }
+
+        @Override
+        float similarity(float[] query, int node) {
+            float sum = 0;
+            int offset = node * dimensions;
+            for (int i = 0; i < dimensions; i++) {
+                sum += query[i] * values[offset + i];
+            }
+            return sum * scales[node];
+        }
+
+        @Override
+        float similarity(int a, int b) {
+            int sum = 0;
+            int offsetA = a * dimensions;
+            int offsetB = b * dimensions;
+            for (int i = 0; i < dimensions; i++) {
+                sum += values[offsetA + i] * values[offsetB + i];
+            }
+            return sum * scales[a] * scales[b];
+        }
+
+        @Override
+        int bytesPerVector() {
+            return dimensions + Float.BYTES;
+        }
+
+        @Override
+        void grow(int capacity) {
+            values = Arrays.copyOf(values, capacity * dimensions);
+            scales = Arrays.copyOf(scales, capacity);
+        }
+
+        @Override
+        void write(ByteBuffer buffer, int size) {
+            buffer.put(values, 0, size * dimensions);
+            buffer.asFloatBuffer().put(scales, 0, size);
+            buffer.position(buffer.position() + size * Float.BYTES);
+        }
+
+        @Override
+        void read(ByteBuffer buffer, int size) {
+            buffer.get(values, 0, size * dimensions);
+            buffer.asFloatBuffer().get(scales, 0, size);
+            buffer.position(buffer.position() + size * Float.BYTES);
+        }
+    }
+
+    static final class Binary extends VectorStorage {
+        private final int words;
+        private final float queryScale;
+        private long[] bits;
+
+        Binary(int dimensions, int capacity) {
+            super(dimensions, capacity);
+            this.words = (dimensions + 63) / 64;
+            this.queryScale = (float) (1 / Math.sqrt(dimensions));
+            this.bits = new long[words * capacity];
+        }
+
+        @Override
+        Quantization quantization() {
+            return Quantization.BINARY;
+        }
+
+        @Override
+        void set(int node, float[] vector) {
+            int offset = node * words;
+            Arrays.fill(bits, offset, offset + words, 0L);
+            for (int i = 0; i < dimensions; i++) {
+                if (vector[i] > 0) {
+                    bits[offset + (i >>> 6)] |= 1L << (i & 63);
+                }
+            }
+        }
+
+        /**
+         * Asymmetric score: the float query against the sign vector of the node.
+         */
+        @Override
+        float similarity(float[] query, int node) {
+            float sum = 0;
+            int offset = node * words;
+            for (int i = 0; i < dimensions; i++) {
+                boolean positive = (bits[offset + (i >>> 6)] & (1L << (i & 63))) != 0;
+                sum += positive ? query[i] : -query[i];
+            }
+            return sum * queryScale;
+        }
+
+        @Override
+        float similarity(int a, int b) {
+            int differing = 0;
+            int offsetA = a * words;
+            int offsetB = b * words;
+            for (int i = 0; i < words; i++) {
+                differing += Long.bitCount(bits[offsetA + i] ^ bits[offsetB + i]);
+            }
+            return 1 - 2f * differing / dimensions;
+        }
+
+        @Override
+        int bytesPerVector() {
+            return words * Long.BYTES;
+        }
+
+        @Override
+        void grow(int capacity) {
+            bits = Arrays.copyOf(bits, capacity * words);
+        }
+
+        @Override
+        void write(ByteBuffer buffer, int size) {
+            buffer.asLongBuffer().put(bits, 0, size * words);
+            buffer.position(buffer.position() + size * words * Long.BYTES);
+        }
+
+        @Override
+        void read(ByteBuffer buffer, int size) {
+            buffer.asLongBuffer().get(bits, 0, size * words);
+            buffer.position(buffer.position() + size * words * Long.BYTES);
+        }
+    }
+}
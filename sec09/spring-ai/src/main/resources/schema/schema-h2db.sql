@@ -7,4 +7,27 @@ CREATE TABLE SPRING_AI_CHAT_MEMORY (
 
 CREATE INDEX SPRING_AI_CHAT_MEMORY_CONVERSATION_ID_TIMESTAMP_IDX ON SPRING_AI_CHAT_MEMORY(conversation_id, "timestamp" DESC);
 
-ALTER TABLE SPRING_AI_CHAT_MEMORY ADD CONSTRAINT TYPE_CHECK CHECK (type IN ('USER', 'ASSISTANT', 'SYSTEM', 'TOOL'));
\ No newline at end of file
+ALTER TABLE SPRING_AI_CHAT_MEMORY ADD CONSTRAINT TYPE_CHECK CHECK (type IN ('USER', 'ASSISTANT', 'SYSTEM', 'TOOL'));
+
+CREATE TABLE SPRING_AI_CHAT_MEMORY_LOG (
+    conversation_id VARCHAR(64) NOT NULL,
+    seq BIGINT NOT NULL,
+    content LONGVARCHAR NOT NULL,
+    type VARCHAR(10) NOT NULL,
+    token_count INT,
+    "timestamp" TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL
+);
+
+-- unique per-conversation sequence, "last N" reads and compaction walk this index from the newest seq
+CREATE UNIQUE INDEX SPRING_AI_CHAT_MEMORY_LOG_CONVERSATION_ID_SEQ_IDX ON SPRING_AI_CHAT_MEMORY_LOG(conversation_id, seq DESC);
+
+ALTER TABLE SPRING_AI_CHAT_MEMORY_LOG ADD CONSTRAINT LOG_TYPE_CHECK CHECK (type IN ('USER', 'ASSISTANT', 'SYSTEM'));
+
+CREATE TABLE SPRING_AI_CHAT_MEMORY_SUMMARY (
+    conversation_id VARCHAR(64) NOT NULL,
+    version INT NOT NULL,
+    content LONGVARCHAR NOT NULL,
+    "timestamp" TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL
+);
+
+CREATE UNIQUE INDEX SPRING_AI_CHAT_MEMORY_SUMMARY_CONVERSATION_ID_VERSION_IDX ON SPRING_AI_CHAT_MEMORY_SUMMARY(conversation_id, version DESC);
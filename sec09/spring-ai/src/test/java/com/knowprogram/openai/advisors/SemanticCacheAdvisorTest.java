@@ -0,0 +1,60 @@
+package com.knowprogram.openai.advisors;
+
+import com.knowprogram.openai.cache.SemanticResponseCache;
+import com.knowprogram.openai.vectorstore.HashEmbeddingModel;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SemanticCacheAdvisorTest {
+
+    private final AtomicInteger modelCalls = new AtomicInteger();
+    private final ChatModel chatModel = prompt -> new ChatResponse(List.of(new Generation(
+            new AssistantMessage("answer " + modelCalls.incrementAndGet()))));
+    private final SemanticResponseCache cache = new SemanticResponseCache(100, 60_000, 8);
+    private final ChatClient chatClient = ChatClient.builder(chatModel)
+            .defaultAdvisors(new SemanticCacheAdvisor(new HashEmbeddingModel(32), cache, 0.95,
+                    new SimpleMeterRegistry()))
+            .build();
+
+    @Test
+    void repeatedPromptIsAnsweredFromTheCache() {
+        String first = chatClient.prompt().user("How many leave days do I get?").call().content();
+        String second = chatClient.prompt().user("How many leave days do I get?").call().content();
+
+        assertThat(second).isEqualTo(first);
+        assertThat(modelCalls).hasValue(1);
+    }
+
+    @Test
+    void requestsCanTurnTheCacheOff() {
+        for (int i = 0; i < 2; i++) {
+            chatClient.prompt().user("Write to Alice about her refund")
+                    .advisors(a -> a.param(SemanticCacheAdvisor.ENABLED, false))
+                    .call().content();
+        }
+
+        assertThat(modelCalls).hasValue(2);
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void lookupDropsExpiredEntries() throws InterruptedException {
+        SemanticResponseCache expiring = new SemanticResponseCache(100, 1, 8);
+        float[] embedding = new HashEmbeddingModel(32).embed("How many leave days do I get?");
+        expiring.put("scope", embedding, new ChatResponse(List.of()), 10);
+        Thread.sleep(10);
+
+        assertThat(expiring.lookup("scope", embedding, 0.95)).isNull();
+        assertThat(expiring.size()).isZero();
+    }
+}
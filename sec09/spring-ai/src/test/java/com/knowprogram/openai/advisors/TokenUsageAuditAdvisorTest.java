@@ -0,0 +1,90 @@
+package com.knowprogram.openai.advisors;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.memory.MessageWindowChatMemory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.DefaultUsage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.HandlerMapping;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenUsageAuditAdvisorTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final ChatModel chatModel = new ChatModel() {
+        @Override
+        public ChatResponse call(Prompt prompt) {
+            return stream(prompt).blockLast();
+        }
+
+        @Override
+        public Flux<ChatResponse> stream(Prompt prompt) {
+            return Flux.just(
+                    new ChatResponse(List.of(new Generation(new AssistantMessage("Hello")))),
+                    new ChatResponse(List.of(new Generation(new AssistantMessage(" world"))),
+                            ChatResponseMetadata.builder().model("test-model").usage(new DefaultUsage(12, 2)).build()));
+        }
+    };
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void streamIsTaggedWithTheRequestMappingAfterAnAdvisorSwitchesThreads() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/chat-memory/stream");
+        request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/api/chat-memory/stream");
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+
+        Flux<String> content = chatClient().prompt()
+                .user("hi")
+                .advisors(advisorSpec -> advisorSpec.param(ChatMemory.CONVERSATION_ID, "alice"))
+                .stream()
+                .content();
+        Flux<String> audited = TokenUsageAuditAdvisor.withRequestEndpoint(content);
+        RequestContextHolder.resetRequestAttributes();
+        audited.blockLast();
+
+        assertThat(meterRegistry.get("chat.tokens").tag("endpoint", "/api/chat-memory/stream")
+                .tag("type", "prompt").counter().count()).isEqualTo(12);
+    }
+
+    @Test
+    void advisorParamOverridesTheRequestMapping() {
+        chatClient().prompt()
+                .user("hi")
+                .advisors(advisorSpec -> advisorSpec.param(ChatMemory.CONVERSATION_ID, "alice")
+                        .param(TokenUsageAuditAdvisor.ENDPOINT, "batch"))
+                .stream()
+                .content()
+                .blockLast();
+
+        assertThat(meterRegistry.get("chat.tokens").tag("endpoint", "batch")
+                .tag("type", "completion").counter().count()).isEqualTo(2);
+    }
+
+    private ChatClient chatClient() {
+        return ChatClient.builder(chatModel)
+                .defaultAdvisors(MessageChatMemoryAdvisor.builder(MessageWindowChatMemory.builder().build()).build(),
+                        new TokenUsageAuditAdvisor(meterRegistry))
+                .build();
+    }
+}
@@ -0,0 +1,119 @@
+package com.knowprogram.openai.config;
+
+import com.knowprogram.openai.advisors.SummarizingChatMemoryAdvisor;
+import com.knowprogram.openai.controller.HelpDeskController;
+import com.knowprogram.openai.memory.ConversationSummaryRepository;
+import com.knowprogram.openai.memory.TieredChatMemoryRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.memory.InMemoryChatMemoryRepository;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.ai.chat.memory.ChatMemory.CONVERSATION_ID;
+
+class HelpDeskChatMemoryTest {
+
+    private static final String USERNAME = "madan";
+    private static final int THRESHOLD = 6;
+    private static final int KEEP_MESSAGES = 2;
+
+    /**
+     * Answers the summarizer with a summary and every other prompt with a reply.
+     */
+    private final ChatModel chatModel = prompt -> {
+        boolean summarizing = prompt.getInstructions().stream().anyMatch(message -> message instanceof SystemMessage
+                && message.getText().startsWith("You maintain the running summary"));
+        return new ChatResponse(List.of(new Generation(new AssistantMessage(summarizing ? "summary" : "reply"))));
+    };
+
+    private final EmbeddedDatabase database = new EmbeddedDatabaseBuilder()
+            .setType(EmbeddedDatabaseType.H2)
+            .generateUniqueName(true)
+            .addScript("schema/schema-h2db.sql")
+            .build();
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final TieredChatMemoryRepository tieredChatMemoryRepository = new TieredChatMemoryRepository(
+            new InMemoryChatMemoryRepository(), TieredChatMemoryRepository.Mode.WRITE_THROUGH, 100,
+            Duration.ofMinutes(5), meterRegistry);
+    private final HelpDeskChartClientConfig helpDeskConfig = new HelpDeskChartClientConfig();
+    private final ConversationSummaryRepository summaryRepository = helpDeskConfig.conversationSummaryRepository(
+            new JdbcTemplate(database), 5, 100, Duration.ofMinutes(5));
+    private final SummarizingChatMemoryAdvisor summarizingAdvisor = helpDeskConfig.summarizingChatMemoryAdvisor(
+            chatModel, tieredChatMemoryRepository, summaryRepository, meterRegistry, "summarizer", THRESHOLD,
+            KEEP_MESSAGES, 1);
+    private final ChatMemory helpDeskChatMemory = helpDeskConfig.helpDeskChatMemory(tieredChatMemoryRepository,
+            summaryRepository, new JTokkitTokenCountEstimator(), 10_000, 50);
+    private final ChatMemory chatMemory = new ChatMemoryChatClientConfig().chatMemory(tieredChatMemoryRepository,
+            new JTokkitTokenCountEstimator(), 10_000, 50);
+
+    // the memory advisors of the help desk and chat memory clients, without tools and retrieval
+    private final ChatClient helpDeskChatClient = ChatClient.builder(chatModel)
+            .defaultAdvisors(summarizingAdvisor, MessageChatMemoryAdvisor.builder(helpDeskChatMemory).build())
+            .build();
+    private final ChatClient chatMemoryChatClient = ChatClient.builder(chatModel)
+            .defaultAdvisors(MessageChatMemoryAdvisor.builder(chatMemory).build())
+            .build();
+
+    @AfterEach
+    void shutdown() throws InterruptedException {
+        summarizingAdvisor.destroy();
+        database.shutdown();
+    }
+
+    private static void chat(ChatClient chatClient, String conversationId, int turns) {
+        for (int i = 0; i < turns; i++) {
+            chatClient.prompt().user("question " + i).advisors(a -> a.param(CONVERSATION_ID, conversationId))
+                    .call().content();
+        }
+    }
+
+    @Test
+    void helpDeskFoldsItsOwnWindowOnly() throws InterruptedException {
+        String helpDesk = HelpDeskController.conversationId(USERNAME);
+        chat(chatMemoryChatClient, USERNAME, 5);
+        chat(helpDeskChatClient, helpDesk, 4);
+        // the fourth turn passes the threshold, destroy waits for its fold
+        summarizingAdvisor.destroy();
+
+        assertThat(chatMemory.get(USERNAME)).hasSize(10);
+        assertThat(summaryRepository.findLatest(USERNAME).version()).isZero();
+        assertThat(helpDeskChatMemory.get(helpDesk)).hasSize(KEEP_MESSAGES)
+                .extracting(Message::getText).containsExactly("question 3", "reply");
+        assertThat(summaryRepository.findLatest(helpDesk).content()).isEqualTo("summary");
+    }
+
+    @Test
+    void clearingAnotherClientKeepsTheHelpDeskSummary() throws InterruptedException {
+        String helpDesk = HelpDeskController.conversationId(USERNAME);
+        chat(chatMemoryChatClient, USERNAME, 5);
+        chat(helpDeskChatClient, helpDesk, 4);
+        summarizingAdvisor.destroy();
+
+        chatMemory.clear(USERNAME);
+        assertThat(summaryRepository.findLatest(helpDesk).version()).isEqualTo(1);
+        assertThat(helpDeskChatMemory.get(helpDesk)).hasSize(KEEP_MESSAGES);
+
+        helpDeskChatMemory.clear(helpDesk);
+        assertThat(summaryRepository.findLatest(helpDesk).version()).isZero();
+        assertThat(helpDeskChatMemory.get(helpDesk)).isEmpty();
+    }
+}
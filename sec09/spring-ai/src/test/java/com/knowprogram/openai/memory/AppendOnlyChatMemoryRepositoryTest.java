@@ -0,0 +1,90 @@
+package com.knowprogram.openai.memory;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AppendOnlyChatMemoryRepositoryTest {
+
+    private static final int WINDOW_SIZE = 4;
+
+    private final EmbeddedDatabase database = new EmbeddedDatabaseBuilder()
+            .setType(EmbeddedDatabaseType.H2)
+            .generateUniqueName(true)
+            .addScript("schema/schema-h2db.sql")
+            .build();
+    private final JdbcTemplate jdbcTemplate = new JdbcTemplate(database);
+    private final AppendOnlyChatMemoryRepository repository = new AppendOnlyChatMemoryRepository(jdbcTemplate,
+            new DataSourceTransactionManager(database), WINDOW_SIZE, 100, 60_000);
+    // read-through, so every turn starts from the window read back from the table
+    private final ChatMemory chatMemory = new TokenBudgetChatMemory(new TieredChatMemoryRepository(repository,
+            TieredChatMemoryRepository.Mode.READ_THROUGH, 100, Duration.ofMinutes(5), new SimpleMeterRegistry()),
+            new JTokkitTokenCountEstimator(), 10_000, WINDOW_SIZE);
+
+    @AfterEach
+    void shutdown() {
+        repository.destroy();
+        database.shutdown();
+    }
+
+    private int rows(String conversationId) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM SPRING_AI_CHAT_MEMORY_LOG WHERE conversation_id = ?",
+                Integer.class, conversationId);
+    }
+
+    @Test
+    void repeatedTurnsAreAllAppended() {
+        for (int i = 0; i < 5; i++) {
+            chatMemory.add("alice", List.of(new UserMessage("hi"), new AssistantMessage("Hello!")));
+        }
+
+        assertThat(rows("alice")).isEqualTo(10);
+        assertThat(repository.findByConversationId("alice")).extracting(Message::getText)
+                .containsExactly("hi", "Hello!", "hi", "Hello!");
+
+        repository.compact();
+        assertThat(rows("alice")).isEqualTo(WINDOW_SIZE);
+    }
+
+    @Test
+    void toolResultsAreNotStored() {
+        AssistantMessage toolCall = new AssistantMessage("", Map.of(), List.of(
+                new AssistantMessage.ToolCall("call-1", "function", "getTicketStatus", "{}")));
+        ToolResponseMessage toolResult = new ToolResponseMessage(List.of(
+                new ToolResponseMessage.ToolResponse("call-1", "getTicketStatus", "OPEN")));
+        chatMemory.add("alice", List.of(new UserMessage("status?"), toolCall, toolResult,
+                new AssistantMessage("Your ticket is open.")));
+
+        assertThat(repository.findByConversationId("alice")).extracting(Message::getMessageType)
+                .doesNotContain(MessageType.TOOL);
+        assertThat(rows("alice")).isEqualTo(3);
+    }
+
+    @Test
+    void newSystemMessageReplacesTheStoredOne() {
+        chatMemory.add("alice", List.of(new SystemMessage("be brief"), new UserMessage("hi")));
+        chatMemory.add("alice", List.of(new SystemMessage("be polite"), new UserMessage("hello")));
+
+        assertThat(repository.findByConversationId("alice")).extracting(Message::getText)
+                .containsExactly("hi", "be polite", "hello");
+    }
+}
@@ -0,0 +1,135 @@
+package com.knowprogram.openai.memory;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WriteBehindChatMemoryRepositoryTest {
+
+    private final EmbeddedDatabase database = new EmbeddedDatabaseBuilder()
+            .setType(EmbeddedDatabaseType.H2)
+            .generateUniqueName(true)
+            .build();
+
+    /**
+     * Stores windows in a map; {@link #failures} writes fail and every write waits for {@link #release}.
+     */
+    private static final class Delegate implements AppendingChatMemoryRepository {
+        final Map<String, List<Message>> stored = new ConcurrentHashMap<>();
+        final AtomicInteger failures = new AtomicInteger();
+        final CountDownLatch writing = new CountDownLatch(1);
+        volatile CountDownLatch release = new CountDownLatch(0);
+
+        @Override
+        public void appendAll(Map<String, Appended> windowsByConversationId) {
+            writing.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (failures.getAndDecrement() > 0) {
+                throw new IllegalStateException("database unavailable");
+            }
+            windowsByConversationId.forEach((conversationId, appended) -> stored.put(conversationId,
+                    appended.window()));
+        }
+
+        @Override
+        public void replace(String conversationId, List<Message> messages) {
+            stored.put(conversationId, messages);
+        }
+
+        @Override
+        public List<String> findConversationIds() {
+            return List.copyOf(stored.keySet());
+        }
+
+        @Override
+        public List<Message> findByConversationId(String conversationId) {
+            return stored.getOrDefault(conversationId, List.of());
+        }
+
+        @Override
+        public void saveAll(String conversationId, List<Message> messages) {
+            replace(conversationId, messages);
+        }
+
+        @Override
+        public void deleteByConversationId(String conversationId) {
+            stored.remove(conversationId);
+        }
+    }
+
+    private final Delegate delegate = new Delegate();
+    private final WriteBehindChatMemoryRepository repository = new WriteBehindChatMemoryRepository(delegate,
+            new JdbcTemplate(database), new DataSourceTransactionManager(database), 10, 10, 20);
+
+    @AfterEach
+    void shutdown() throws InterruptedException {
+        repository.destroy();
+        database.shutdown();
+    }
+
+    private static List<Message> window(String... texts) {
+        return Arrays.stream(texts).<Message>map(UserMessage::new).toList();
+    }
+
+    @Test
+    void deleteIsAppliedAfterTheWriteInFlight() throws InterruptedException {
+        delegate.release = new CountDownLatch(1);
+        repository.append("alice", window("hello"), 1);
+        assertThat(delegate.writing.await(5, TimeUnit.SECONDS)).isTrue();
+
+        repository.deleteByConversationId("alice");
+        assertThat(repository.findByConversationId("alice")).isEmpty();
+        assertThat(repository.findConversationIds()).doesNotContain("alice");
+        delegate.release.countDown();
+        repository.destroy();
+
+        assertThat(delegate.stored).doesNotContainKey("alice");
+    }
+
+    @Test
+    void failedWriteIsRetriedAndStaysReadable() throws InterruptedException {
+        delegate.failures.set(2);
+        repository.append("alice", window("hello", "how are you"), 2);
+
+        assertThat(delegate.writing.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(repository.findByConversationId("alice")).extracting(Message::getText)
+                .containsExactly("hello", "how are you");
+        repository.destroy();
+
+        assertThat(delegate.failures.get()).isNegative();
+        assertThat(delegate.stored.get("alice")).extracting(Message::getText).containsExactly("hello", "how are you");
+    }
+
+    @Test
+    void windowSavedDuringItsWriteIsWrittenToo() throws InterruptedException {
+        delegate.release = new CountDownLatch(1);
+        repository.append("alice", window("hello"), 1);
+        assertThat(delegate.writing.await(5, TimeUnit.SECONDS)).isTrue();
+
+        repository.append("alice", window("hello", "bye"), 1);
+        delegate.release.countDown();
+        repository.destroy();
+
+        assertThat(delegate.stored.get("alice")).extracting(Message::getText).containsExactly("hello", "bye");
+    }
+}
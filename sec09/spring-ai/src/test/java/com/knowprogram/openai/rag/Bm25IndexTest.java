@@ -0,0 +1,51 @@
+package com.knowprogram.openai.rag;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class Bm25IndexTest {
+
+    private static List<Document> chunks(int count) {
+        List<Document> chunks = new ArrayList<>();
+        chunks.add(new Document("leave", "Annual leave is 24 days per year.", Map.of()));
+        for (int i = 1; i < count; i++) {
+            chunks.add(new Document("chunk-" + i, "Expense claim number " + i + " is paid monthly.", Map.of()));
+        }
+        return chunks;
+    }
+
+    @Test
+    void removedChunksDoNotCountTowardsDocumentFrequency() {
+        Bm25Index clean = new Bm25Index();
+        clean.add(chunks(10));
+        Bm25Index withTombstone = new Bm25Index();
+        withTombstone.add(chunks(10));
+        withTombstone.add(List.of(new Document("old-leave", "Sick leave needs a note.", Map.of())));
+        withTombstone.remove(List.of("old-leave"));
+
+        assertThat(withTombstone.search("leave", 5)).singleElement()
+                .satisfies(hit -> assertThat(hit.score()).isEqualTo(clean.search("leave", 5).get(0).score()));
+    }
+
+    @Test
+    void compactionKeepsLiveChunksSearchable() {
+        Bm25Index index = new Bm25Index();
+        index.add(chunks(8));
+        index.remove(List.of("chunk-1", "chunk-2", "chunk-3"));
+
+        assertThat(index.size()).isEqualTo(5);
+        assertThat(index.search("expense", 10)).extracting(hit -> hit.document().getId())
+                .containsExactlyInAnyOrder("chunk-4", "chunk-5", "chunk-6", "chunk-7");
+        assertThat(index.search("annual leave", 10)).extracting(hit -> hit.document().getId())
+                .containsExactly("leave");
+
+        index.add(List.of(new Document("chunk-2", "Expense claim number 2 is paid monthly.", Map.of())));
+        assertThat(index.search("2", 10)).extracting(hit -> hit.document().getId()).containsExactly("chunk-2");
+    }
+}
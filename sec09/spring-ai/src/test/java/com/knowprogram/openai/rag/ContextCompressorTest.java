@@ -0,0 +1,48 @@
+package com.knowprogram.openai.rag;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ContextCompressorTest {
+
+    private final ContextCompressor compressor = new ContextCompressor(new JTokkitTokenCountEstimator(), 3, 10_000,
+            new SimpleMeterRegistry());
+
+    private static Document chunk(String text, int page, int index) {
+        return new Document(text, Map.of(IngestionPipeline.SOURCE, "policies",
+                StreamingDocumentReader.FILE_NAME, "handbook.pdf",
+                StreamingDocumentReader.PAGE_NUMBER, page,
+                IngestionPipeline.CHUNK_INDEX, index));
+    }
+
+    private List<String> compress(Document... documents) {
+        return compressor.process(new Query("leave"), List.of(documents)).stream().map(Document::getText).toList();
+    }
+
+    @Test
+    void consecutiveChunksOfAPageAreMergedAtTheBestRank() {
+        assertThat(compress(
+                chunk("Annual leave is twenty days per year.", 1, 1),
+                chunk("Holiday pay is reviewed every April by payroll.", 2, 7),
+                chunk("Unused leave carries over until the end of March.", 1, 0)))
+                .containsExactly("Unused leave carries over until the end of March. Annual leave is twenty days per year.",
+                        "Holiday pay is reviewed every April by payroll.");
+    }
+
+    @Test
+    void chunksOnDifferentPagesAreNotMerged() {
+        assertThat(compress(
+                chunk("Annual leave is twenty days per year.", 1, 4),
+                chunk("Sick leave needs a doctor's note after three days.", 2, 5)))
+                .containsExactly("Annual leave is twenty days per year.",
+                        "Sick leave needs a doctor's note after three days.");
+    }
+}
@@ -0,0 +1,112 @@
+package com.knowprogram.openai.rag;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.knowprogram.openai.cache.PromptFingerprint;
+import com.knowprogram.openai.vectorstore.HashEmbeddingModel;
+import com.knowprogram.openai.vectorstore.HnswVectorStore;
+import com.knowprogram.openai.vectorstore.Quantization;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.TokenCountBatchingStrategy;
+import org.springframework.ai.vectorstore.SearchRequest;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IngestionPipelineTest {
+
+    private static final String SOURCE = "policies";
+    private static final String SHARED = "Employees must report security incidents within one hour.";
+
+    @TempDir
+    Path directory;
+
+    private HnswVectorStore vectorStore;
+    private Bm25Index keywordIndex;
+    private IngestionPipeline pipeline;
+
+    @BeforeEach
+    void setUp() {
+        vectorStore = new HnswVectorStore(new HashEmbeddingModel(16), new TokenCountBatchingStrategy(),
+                new ObjectMapper(), directory.resolve("index.hnsw"), 8, 50, 50, Quantization.NONE, 1, 60_000);
+        keywordIndex = new Bm25Index();
+        pipeline = new IngestionPipeline(vectorStore, keywordIndex, new CorpusVersion(), "test", 4, 2,
+                new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        pipeline.destroy();
+        vectorStore.destroy();
+    }
+
+    @Test
+    void sharedChunkSurvivesEditAndDeleteOfTheOtherFile() {
+        ingest("a.txt", SHARED, "Laptops are replaced every three years.");
+        ingest("b.txt", SHARED, "Visitors sign in at the front desk.");
+
+        ingest("a.txt", "Laptops are replaced every four years.");
+        assertThat(stored("b.txt", SHARED)).isTrue();
+        assertThat(stored("a.txt", SHARED)).isFalse();
+
+        pipeline.removeFile(SOURCE, "a.txt").join();
+        assertThat(stored("b.txt", SHARED)).isTrue();
+        assertThat(keywordHits("security incidents")).containsExactly("b.txt");
+    }
+
+    @Test
+    void renameHandledBeforeDeleteKeepsTheNewFile() {
+        ingest("old.txt", SHARED, "Expenses are approved by the team lead.");
+
+        ingest("new.txt", SHARED, "Expenses are approved by the team lead.");
+        pipeline.removeFile(SOURCE, "old.txt").join();
+
+        assertThat(stored("new.txt", SHARED)).isTrue();
+        assertThat(stored("new.txt", "Expenses are approved by the team lead.")).isTrue();
+        assertThat(stored("old.txt", SHARED)).isFalse();
+        assertThat(keywordHits("security incidents")).containsExactly("new.txt");
+        assertThat(keywordHits("expenses approved")).containsExactly("new.txt");
+    }
+
+    @Test
+    void unchangedChunksMoveToTheirNewPosition() {
+        ingest("a.txt", "Laptops are replaced every three years.", SHARED);
+
+        ingest("a.txt", "Visitors sign in at the front desk.", "Laptops are replaced every three years.", SHARED);
+
+        assertThat(storedIndex(SHARED)).isEqualTo(2);
+        assertThat(storedIndex("Laptops are replaced every three years.")).isEqualTo(1);
+        assertThat(keywordIndex.search("security incidents", 1).get(0).document().getMetadata())
+                .containsEntry(IngestionPipeline.CHUNK_INDEX, 2);
+    }
+
+    private void ingest(String fileName, String... chunks) {
+        pipeline.submitFile(SOURCE, fileName, () -> Stream.of(chunks)
+                .map(text -> new Document(text, Map.of(StreamingDocumentReader.FILE_NAME, fileName)))).join();
+    }
+
+    private boolean stored(String fileName, String text) {
+        String id = IngestionPipeline.chunkId(SOURCE, fileName, PromptFingerprint.sha256(text));
+        return vectorStore.existingIds(List.of(id)).contains(id);
+    }
+
+    private Object storedIndex(String text) {
+        Document hit = vectorStore.similaritySearch(SearchRequest.builder().query(text).topK(1).build()).get(0);
+        assertThat(hit.getText()).isEqualTo(text);
+        return hit.getMetadata().get(IngestionPipeline.CHUNK_INDEX);
+    }
+
+    private List<Object> keywordHits(String query) {
+        return keywordIndex.search(query, 10).stream()
+                .map(hit -> hit.document().getMetadata().get(StreamingDocumentReader.FILE_NAME))
+                .toList();
+    }
+}
@@ -0,0 +1,70 @@
+package com.knowprogram.openai.rag;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.reader.tika.TikaDocumentReader;
+import org.springframework.ai.transformer.splitter.TextSplitter;
+import org.springframework.ai.transformer.splitter.TokenTextSplitter;
+import org.springframework.core.io.ClassPathResource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compares {@link ParallelTokenTextSplitter} with the {@link TokenTextSplitter} of {@code HRPolicyLoader}
+ * ({@code withChunkSize(100).withMaxNumChunks(400)}) on the HR policy PDF, repeated {@code copies}
+ * times with a distinct prefix per copy to stand in for a larger corpus. Checks that both produce the
+ * same chunks before timing them.
+ * <p>
+ * Not a test; run {@code main} with optional {@code [copies] [iterations] [parallelism]} arguments.
+ */
+public class SplitterBenchmark {
+
+    public static void main(String[] args) {
+        int copies = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int parallelism = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        String pdf = new TikaDocumentReader(new ClassPathResource("Eazybytes_HR_Policies.pdf")).get().get(0).getText();
+        List<Document> corpus = new ArrayList<>();
+        for (int i = 0; i < copies; i++) {
+            corpus.add(new Document("Policy set " + i + ".\n" + pdf));
+        }
+
+        TokenTextSplitter baseline = TokenTextSplitter.builder().withChunkSize(100).withMaxNumChunks(400).build();
+        ParallelTokenTextSplitter sequential = new ParallelTokenTextSplitter(100, 400, 1);
+        ParallelTokenTextSplitter parallel = new ParallelTokenTextSplitter(100, 400, parallelism);
+        try {
+            List<String> expected = texts(baseline.split(corpus));
+            if (!expected.equals(texts(parallel.split(corpus))) || !expected.equals(texts(sequential.split(corpus)))) {
+                throw new IllegalStateException("Chunks differ from TokenTextSplitter");
+            }
+            System.out.printf("%d documents, %d chunks, identical output%n", corpus.size(), expected.size());
+            System.out.printf("%-28s %10s %10s%n", "splitter", "p50 ms", "min ms");
+            report("TokenTextSplitter", baseline, corpus, iterations);
+            report("ParallelTokenTextSplitter/1", sequential, corpus, iterations);
+            report("ParallelTokenTextSplitter/" + parallelism, parallel, corpus, iterations);
+        } finally {
+            sequential.destroy();
+            parallel.destroy();
+        }
+    }
+
+    private static void report(String name, TextSplitter splitter, List<Document> corpus, int iterations) {
+        for (int i = 0; i < 3; i++) {
+            splitter.split(corpus);
+        }
+        long[] millis = new long[iterations];
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            splitter.split(corpus);
+            millis[i] = (System.nanoTime() - start) / 1_000_000;
+        }
+        Arrays.sort(millis);
+        System.out.printf("%-28s %10d %10d%n", name, millis[iterations / 2], millis[0]);
+    }
+
+    private static List<String> texts(List<Document> documents) {
+        return documents.stream().map(Document::getText).toList();
+    }
+}
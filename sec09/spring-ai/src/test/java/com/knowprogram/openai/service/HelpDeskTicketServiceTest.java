@@ -0,0 +1,98 @@
+package com.knowprogram.openai.service;
+
+import com.knowprogram.openai.entity.HelpDeskTicket;
+import com.knowprogram.openai.model.TicketPage;
+import com.knowprogram.openai.model.TicketSummary;
+import com.knowprogram.openai.repository.HelpDeskTicketRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest
+@Import(HelpDeskTicketService.class)
+class HelpDeskTicketServiceTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2025, 3, 1, 9, 30);
+
+    @Autowired
+    private HelpDeskTicketRepository helpDeskTicketRepository;
+
+    @Autowired
+    private HelpDeskTicketService helpDeskTicketService;
+
+    private final List<Long> aliceTickets = new ArrayList<>();
+
+    @BeforeEach
+    void tickets() {
+        // five tickets share one created_at, so the pages have to be split by id
+        for (int i = 0; i < 5; i++) {
+            aliceTickets.add(save("alice", i % 2 == 0 ? "OPEN" : "CLOSED", NOW));
+        }
+        aliceTickets.add(0, save("alice", "OPEN", NOW.plusMinutes(1)));
+        aliceTickets.add(save("alice", "OPEN", NOW.minusMinutes(1)));
+        save("bob", "OPEN", NOW);
+    }
+
+    private Long save(String username, String status, LocalDateTime createdAt) {
+        return helpDeskTicketRepository.save(HelpDeskTicket.builder().username(username).issue("issue")
+                .status(status).createdAt(createdAt).eta(createdAt.plusDays(7)).build()).getId();
+    }
+
+    private List<Long> allPages(String status, int limit) {
+        List<Long> ids = new ArrayList<>();
+        String cursor = null;
+        do {
+            TicketPage page = helpDeskTicketService.getTickets("alice", status, limit, cursor);
+            assertThat(page.tickets()).hasSizeLessThanOrEqualTo(limit);
+            page.tickets().stream().map(TicketSummary::id).forEach(ids::add);
+            cursor = page.nextCursor();
+        } while (cursor != null);
+        return ids;
+    }
+
+    /**
+     * Alice's tickets newest first, and ties on created_at newest id first.
+     */
+    private List<Long> newestFirst() {
+        List<Long> expected = new ArrayList<>(aliceTickets);
+        expected.subList(1, 6).sort((a, b) -> Long.compare(b, a));
+        return expected;
+    }
+
+    @Test
+    void pagesThroughTicketsCreatedAtTheSameTime() {
+        assertThat(allPages(null, 2)).containsExactlyElementsOf(newestFirst());
+        assertThat(allPages(null, 3)).containsExactlyElementsOf(newestFirst());
+    }
+
+    @Test
+    void filtersByStatusAcrossPages() {
+        List<Long> open = allPages("open", 2);
+
+        assertThat(open).hasSize(5).doesNotHaveDuplicates();
+        assertThat(helpDeskTicketRepository.findAllById(open))
+                .allSatisfy(ticket -> assertThat(ticket.getStatus()).isEqualTo("OPEN"))
+                .allSatisfy(ticket -> assertThat(ticket.getUsername()).isEqualTo("alice"));
+    }
+
+    @Test
+    void cursorPointsPastTheLastTicketOfThePage() {
+        TicketPage first = helpDeskTicketService.getTickets("alice", null, 2, null);
+        TicketSummary last = first.tickets().get(1);
+
+        assertThat(first.nextCursor()).isEqualTo(last.createdAt() + "_" + last.id());
+        assertThat(helpDeskTicketService.getTickets("alice", null, 2, first.nextCursor()).tickets())
+                .extracting(TicketSummary::id).containsExactlyElementsOf(newestFirst().subList(2, 4));
+        assertThatThrownBy(() -> helpDeskTicketService.getTickets("alice", null, 2, "not-a-cursor"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,169 @@
+package com.knowprogram.openai.tools;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.DefaultUsage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import org.springframework.ai.model.tool.ToolExecutionResult;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BoundedToolLoopChatModelTest {
+
+    /**
+     * Streams like the OpenAI model does: text chunks, then either a chunk with the tool calls or
+     * the end of the answer, then a chunk with no generations that only carries the usage.
+     */
+    private final ChatModel delegate = new ChatModel() {
+        @Override
+        public ChatResponse call(Prompt prompt) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Flux<ChatResponse> stream(Prompt prompt) {
+            boolean answered = prompt.getInstructions().stream().anyMatch(ToolResponseMessage.class::isInstance);
+            if (answered) {
+                return Flux.just(text("It is "), text("noon."), usage(200, 20));
+            }
+            AssistantMessage toolCall = new AssistantMessage("", Map.of(), List.of(
+                    new AssistantMessage.ToolCall("call-1", "function", "getCurrentLocalTime", "{}")));
+            return Flux.just(text("Let me check. "), new ChatResponse(List.of(new Generation(toolCall))),
+                    usage(100, 10));
+        }
+
+        @Override
+        public ChatOptions getDefaultOptions() {
+            return ToolCallingChatOptions.builder().build();
+        }
+    };
+
+    private final ToolCallingManager toolCallingManager = new ToolCallingManager() {
+        @Override
+        public List<ToolDefinition> resolveToolDefinitions(ToolCallingChatOptions chatOptions) {
+            return List.of();
+        }
+
+        @Override
+        public ToolExecutionResult executeToolCalls(Prompt prompt, ChatResponse chatResponse) {
+            List<Message> history = new ArrayList<>(prompt.getInstructions());
+            history.add(chatResponse.getResult().getOutput());
+            history.add(new ToolResponseMessage(List.of(
+                    new ToolResponseMessage.ToolResponse("call-1", "getCurrentLocalTime", "12:00"))));
+            return ToolExecutionResult.builder().conversationHistory(history).build();
+        }
+    };
+
+    @Test
+    void streamEndsWithTheUsageOfEveryRound() {
+        BoundedToolLoopChatModel model = new BoundedToolLoopChatModel(delegate, toolCallingManager, 5, 10_000,
+                Duration.ofSeconds(30), new SimpleMeterRegistry());
+
+        List<ChatResponse> chunks = model.stream(prompt()).collectList().block();
+
+        assertThat(chunks).extracting(chunk -> chunk.getResults().isEmpty() ? null : chunk.getResult().getOutput().getText())
+                .containsExactly("Let me check. ", "It is ", "noon.", null);
+        ChatResponse last = chunks.get(chunks.size() - 1);
+        assertThat(last.getMetadata().getUsage().getPromptTokens()).isEqualTo(300);
+        assertThat(last.getMetadata().getUsage().getCompletionTokens()).isEqualTo(30);
+    }
+
+    @Test
+    void tokenBudgetSeesTheUsageReportedAfterTheToolCalls() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        BoundedToolLoopChatModel model = new BoundedToolLoopChatModel(delegate, toolCallingManager, 5, 100,
+                Duration.ofSeconds(30), meterRegistry);
+
+        ChatResponse last = model.stream(prompt()).blockLast();
+
+        assertThat(meterRegistry.get("tool.loop.stopped").tag("reason", "tokens").counter().count()).isEqualTo(1);
+        assertThat(last.getMetadata().get(BoundedToolLoopChatModel.STOPPED).toString()).isEqualTo("tokens");
+        assertThat(meterRegistry.get("tool.loop.round").tag("phase", "wrap-up").timer().count()).isEqualTo(1);
+    }
+
+    /**
+     * Asks for a tool in every call, unless the tools were taken away for the wrap-up.
+     */
+    private final List<Prompt> calls = new ArrayList<>();
+    private final ChatModel toolHungry = new ChatModel() {
+        @Override
+        public ChatResponse call(Prompt prompt) {
+            calls.add(prompt);
+            if (prompt.getInstructions().get(prompt.getInstructions().size() - 1) instanceof SystemMessage) {
+                return new ChatResponse(List.of(new Generation(new AssistantMessage("It was noon."))),
+                        ChatResponseMetadata.builder().usage(new DefaultUsage(100, 10)).build());
+            }
+            AssistantMessage toolCall = new AssistantMessage("", Map.of(), List.of(
+                    new AssistantMessage.ToolCall("call-1", "function", "getCurrentLocalTime", "{}")));
+            return new ChatResponse(List.of(new Generation(toolCall)),
+                    ChatResponseMetadata.builder().usage(new DefaultUsage(100, 10)).build());
+        }
+
+        @Override
+        public ChatOptions getDefaultOptions() {
+            return ToolCallingChatOptions.builder().build();
+        }
+    };
+
+    @Test
+    void lastRoundsToolResultsAreAnsweredByTheWrapUp() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        BoundedToolLoopChatModel model = new BoundedToolLoopChatModel(toolHungry, toolCallingManager, 2, 10_000,
+                Duration.ofSeconds(30), meterRegistry);
+
+        ChatResponse response = model.call(prompt());
+
+        assertThat(calls).hasSize(3);
+        assertThat(calls.get(2).getInstructions()).filteredOn(ToolResponseMessage.class::isInstance).hasSize(2);
+        assertThat(response.getResult().getOutput().getText()).isEqualTo("It was noon.");
+        assertThat(response.getMetadata().get(BoundedToolLoopChatModel.STOPPED).toString()).isEqualTo("rounds");
+        assertThat(response.getMetadata().getUsage().getTotalTokens()).isEqualTo(330);
+        assertThat(meterRegistry.get("tool.loop.round").tag("round", "3").tag("phase", "wrap-up").timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void pastTheDeadlineTheModelAnswersFromWhatItGathered() {
+        BoundedToolLoopChatModel model = new BoundedToolLoopChatModel(toolHungry, toolCallingManager, 5, 10_000,
+                Duration.ZERO, new SimpleMeterRegistry());
+
+        ChatResponse response = model.call(prompt());
+
+        assertThat(calls).hasSize(2);
+        assertThat(calls.get(1).getInstructions()).anyMatch(ToolResponseMessage.class::isInstance);
+        assertThat(response.getResult().getOutput().getText()).isEqualTo("It was noon.");
+        assertThat(response.getMetadata().get(BoundedToolLoopChatModel.STOPPED).toString()).isEqualTo("deadline");
+    }
+
+    private static Prompt prompt() {
+        return new Prompt(List.of(new UserMessage("What time is it?")), ToolCallingChatOptions.builder().build());
+    }
+
+    private static ChatResponse text(String text) {
+        return new ChatResponse(List.of(new Generation(new AssistantMessage(text))));
+    }
+
+    private static ChatResponse usage(int promptTokens, int completionTokens) {
+        return new ChatResponse(List.of(),
+                ChatResponseMetadata.builder().usage(new DefaultUsage(promptTokens, completionTokens)).build());
+    }
+}
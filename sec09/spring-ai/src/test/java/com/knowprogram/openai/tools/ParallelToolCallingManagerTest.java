@@ -0,0 +1,98 @@
+package com.knowprogram.openai.tools;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import org.springframework.ai.model.tool.ToolExecutionResult;
+import org.springframework.ai.tool.definition.ToolDefinition;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ParallelToolCallingManagerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    /**
+     * Answers every call with its id after sleeping for the number of milliseconds in its arguments.
+     */
+    private final ToolCallingManager sleepingTools = new ToolCallingManager() {
+        @Override
+        public List<ToolDefinition> resolveToolDefinitions(ToolCallingChatOptions chatOptions) {
+            return List.of();
+        }
+
+        @Override
+        public ToolExecutionResult executeToolCalls(Prompt prompt, ChatResponse chatResponse) {
+            AssistantMessage.ToolCall toolCall = chatResponse.getResult().getOutput().getToolCalls().get(0);
+            // ignores cancellation, like a tool blocked in a call that cannot be interrupted
+            long until = System.nanoTime() + Duration.ofMillis(Long.parseLong(toolCall.arguments())).toNanos();
+            while (System.nanoTime() < until) {
+                LockSupport.parkNanos(until - System.nanoTime());
+            }
+            List<Message> history = new ArrayList<>(prompt.getInstructions());
+            history.add(new ToolResponseMessage(List.of(
+                    new ToolResponseMessage.ToolResponse(toolCall.id(), toolCall.name(), "done " + toolCall.id()))));
+            return ToolExecutionResult.builder().conversationHistory(history).build();
+        }
+    };
+
+    private final ParallelToolCallingManager manager = new ParallelToolCallingManager(sleepingTools,
+            tool -> Duration.ofMillis(400), 1, 1, meterRegistry);
+
+    @AfterEach
+    void tearDown() {
+        manager.destroy();
+    }
+
+    @Test
+    void queuedCallGetsItsFullTimeoutAndOverflowIsRejected() {
+        ToolExecutionResult result = manager.executeToolCalls(new Prompt(new UserMessage("check")),
+                response(call("1", 250), call("2", 250), call("3", 10)));
+
+        assertThat(answers(result)).containsExactly("done 1", "done 2",
+                "Tool sleep was not run because too many tools are running, try again later");
+        assertThat(meterRegistry.get("tool.calls").tag("result", "success").timer().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("tool.calls").tag("result", "rejected").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void callStillQueuedAfterItsTimeoutIsNotRun() {
+        ToolExecutionResult result = manager.executeToolCalls(new Prompt(new UserMessage("check")),
+                response(call("1", 600), call("2", 10)));
+
+        assertThat(answers(result)).containsExactly("Tool sleep did not answer within 400 ms",
+                "Tool sleep was not run because too many tools are running, try again later");
+        assertThat(meterRegistry.get("tool.calls").tag("result", "timeout").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("tool.calls").tag("result", "queued").timer().count()).isEqualTo(1);
+    }
+
+    private static AssistantMessage.ToolCall call(String id, long sleepMillis) {
+        return new AssistantMessage.ToolCall(id, "function", "sleep", String.valueOf(sleepMillis));
+    }
+
+    private static ChatResponse response(AssistantMessage.ToolCall... toolCalls) {
+        return new ChatResponse(List.of(new Generation(new AssistantMessage("", Map.of(), List.of(toolCalls)))));
+    }
+
+    private static List<String> answers(ToolExecutionResult result) {
+        List<Message> history = result.conversationHistory();
+        return ((ToolResponseMessage) history.get(history.size() - 1)).getResponses().stream()
+                .map(ToolResponseMessage.ToolResponse::responseData)
+                .toList();
+    }
+}
@@ -0,0 +1,134 @@
+package com.knowprogram.openai.tools;
+
+import com.knowprogram.openai.entity.HelpDeskTicket;
+import com.knowprogram.openai.model.TicketPage;
+import com.knowprogram.openai.model.TicketRequest;
+import com.knowprogram.openai.model.TicketSummary;
+import com.knowprogram.openai.service.HelpDeskTicketService;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.support.ToolCallbacks;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.annotation.Tool;
+import org.springframework.ai.tool.execution.ToolExecutionException;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PrecompiledToolCallbackTest {
+
+    private static final LocalDateTime CREATED_AT = LocalDateTime.of(2025, 1, 6, 9, 30);
+
+    /**
+     * Answers without a database and records the arguments it was called with.
+     */
+    private final List<List<Object>> serviceCalls = new ArrayList<>();
+    private final HelpDeskTicketService service = new HelpDeskTicketService(null) {
+        @Override
+        public HelpDeskTicket createTicket(TicketRequest ticketRequest, String username) {
+            serviceCalls.add(Arrays.asList(ticketRequest, username));
+            return HelpDeskTicket.builder().id(42L).issue(ticketRequest == null ? null : ticketRequest.issue())
+                    .username(username).build();
+        }
+
+        @Override
+        public TicketPage getTickets(String username, String status, Integer limit, String cursor) {
+            serviceCalls.add(Arrays.asList(username, status, limit, cursor));
+            return new TicketPage(List.of(new TicketSummary(7L, "VPN is down", "OPEN", CREATED_AT,
+                    CREATED_AT.plusDays(7))), null);
+        }
+    };
+    private final HelpdeskTools tools = new HelpdeskTools(service);
+    private final ToolContext toolContext = new ToolContext(Map.of("username", "madan"));
+
+    private final Map<String, PrecompiledToolCallback> precompiled = PrecompiledToolCallback.from(tools).stream()
+            .collect(Collectors.toMap(callback -> callback.getToolDefinition().name(), Function.identity()));
+    private final Map<String, ToolCallback> reflective = Arrays.stream(ToolCallbacks.from(tools))
+            .collect(Collectors.toMap(callback -> callback.getToolDefinition().name(), Function.identity()));
+
+    /**
+     * Calls {@code toolName} through both callbacks and checks that the results and the arguments
+     * passed to the service match.
+     */
+    private String callBoth(String toolName, String toolInput) {
+        String expected = reflective.get(toolName).call(toolInput, toolContext);
+        List<Object> expectedArguments = serviceCalls.remove(0);
+        String actual = precompiled.get(toolName).call(toolInput, toolContext);
+        assertThat(actual).isEqualTo(expected);
+        assertThat(serviceCalls).containsExactly(expectedArguments);
+        serviceCalls.clear();
+        return actual;
+    }
+
+    @Test
+    void definitionsMatchMethodToolCallback() {
+        assertThat(precompiled.keySet()).isEqualTo(reflective.keySet());
+        reflective.forEach((name, callback) -> {
+            assertThat(precompiled.get(name).getToolDefinition()).isEqualTo(callback.getToolDefinition());
+            assertThat(precompiled.get(name).getToolMetadata().returnDirect())
+                    .isEqualTo(callback.getToolMetadata().returnDirect());
+        });
+    }
+
+    @Test
+    void recordArgumentAndToolContextArePassedLikeMethodToolCallback() {
+        String result = callBoth("createTicket", "{\"ticketRequest\":{\"issue\":\"VPN is down\"}}");
+
+        assertThat(result).contains("Ticket #42 created successfully for user: madan");
+    }
+
+    @Test
+    void optionalAndMissingArgumentsArePassedAsNull() {
+        callBoth("getTicketStatus", "{\"status\":\"OPEN\",\"limit\":5}");
+        callBoth("getTicketStatus", "{}");
+        callBoth("createTicket", "{}");
+    }
+
+    @Test
+    void emptyInputIsRejectedLikeMethodToolCallback() {
+        assertThatThrownBy(() -> reflective.get("getTicketStatus").call("", toolContext))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> precompiled.get("getTicketStatus").call("", toolContext))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void unreadableArgumentIsAToolExecutionException() {
+        assertThatThrownBy(() -> precompiled.get("getTicketStatus").call("{\"limit\":\"many\"}", toolContext))
+                .isInstanceOf(ToolExecutionException.class);
+        assertThat(serviceCalls).isEmpty();
+    }
+
+    static class FailingTools {
+        @Tool(description = "Fails with an exception")
+        String failWithException() {
+            throw new IllegalStateException("tool failed");
+        }
+
+        @Tool(description = "Fails with an error")
+        String failWithError() {
+            throw new AssertionError("tool broke");
+        }
+    }
+
+    @Test
+    void exceptionsAreWrappedAndErrorsRethrown() {
+        Map<String, PrecompiledToolCallback> failing = PrecompiledToolCallback.from(new FailingTools()).stream()
+                .collect(Collectors.toMap(callback -> callback.getToolDefinition().name(), Function.identity()));
+
+        assertThatThrownBy(() -> failing.get("failWithException").call("{}"))
+                .isInstanceOf(ToolExecutionException.class)
+                .hasRootCauseMessage("tool failed");
+        assertThatThrownBy(() -> failing.get("failWithError").call("{}"))
+                .isInstanceOf(AssertionError.class)
+                .hasMessage("tool broke");
+    }
+}
@@ -0,0 +1,140 @@
+package com.knowprogram.openai.tools;
+
+import com.knowprogram.openai.entity.HelpDeskTicket;
+import com.knowprogram.openai.model.TicketPage;
+import com.knowprogram.openai.model.TicketRequest;
+import com.knowprogram.openai.service.HelpDeskTicketService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.ToolCallbackProvider;
+import org.springframework.ai.tool.annotation.Tool;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ToolResultCacheTest {
+
+    private final ToolResultCache cache = new ToolResultCache(100, new SimpleMeterRegistry());
+
+    /**
+     * Counts the ticket lookups that reach the service.
+     */
+    private final AtomicInteger lookups = new AtomicInteger();
+    private final HelpDeskTicketService service = new HelpDeskTicketService(null) {
+        @Override
+        public HelpDeskTicket createTicket(TicketRequest ticketRequest, String username) {
+            return HelpDeskTicket.builder().id(1L).username(username).build();
+        }
+
+        @Override
+        public TicketPage getTickets(String username, String status, Integer limit, String cursor) {
+            lookups.incrementAndGet();
+            return new TicketPage(List.of(), null);
+        }
+    };
+
+    private static ToolCallback tool(ToolCallbackProvider provider, String name) {
+        return Arrays.stream(provider.getToolCallbacks())
+                .filter(callback -> callback.getToolDefinition().name().equals(name))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private static ToolContext user(String username) {
+        return new ToolContext(Map.of("username", username));
+    }
+
+    @Test
+    void resultsAreKeyedOnArgumentsAndUsername() {
+        ToolCallback getTicketStatus = tool(cache.wrap(new HelpdeskTools(service)), "getTicketStatus");
+
+        getTicketStatus.call("{\"status\":\"OPEN\",\"limit\":5}", user("madan"));
+        getTicketStatus.call("{\"limit\":5,\"status\":\"OPEN\"}", user("madan"));
+        assertThat(lookups).hasValue(1);
+
+        getTicketStatus.call("{\"status\":\"CLOSED\",\"limit\":5}", user("madan"));
+        getTicketStatus.call("{\"status\":\"OPEN\",\"limit\":5}", user("rahul"));
+        assertThat(lookups).hasValue(3);
+    }
+
+    @Test
+    void createTicketEvictsTheStatusOfTheSameUserOnly() {
+        ToolCallbackProvider tools = cache.wrap(new HelpdeskTools(service));
+        ToolCallback getTicketStatus = tool(tools, "getTicketStatus");
+        getTicketStatus.call("{}", user("madan"));
+        getTicketStatus.call("{}", user("rahul"));
+
+        tool(tools, "createTicket").call("{\"ticketRequest\":{\"issue\":\"VPN is down\"}}", user("madan"));
+        getTicketStatus.call("{}", user("madan"));
+        getTicketStatus.call("{}", user("rahul"));
+
+        assertThat(lookups).hasValue(3);
+    }
+
+    static class ShortLivedTools {
+        final AtomicInteger calls = new AtomicInteger();
+
+        @CachedTool(ttl = "50ms")
+        @Tool(description = "Counts its calls")
+        int count() {
+            return calls.incrementAndGet();
+        }
+    }
+
+    @Test
+    void resultsExpireAfterTheirTtl() throws InterruptedException {
+        ShortLivedTools tools = new ShortLivedTools();
+        ToolCallback count = tool(cache.wrap(tools), "count");
+
+        count.call("{}");
+        count.call("{}");
+        assertThat(tools.calls).hasValue(1);
+
+        Thread.sleep(100);
+        count.call("{}");
+        assertThat(tools.calls).hasValue(2);
+    }
+
+    /**
+     * {@code update} reads through the cached {@code read} tool while it runs, as a concurrent
+     * request would.
+     */
+    static class ReadDuringUpdateTools {
+        final AtomicInteger reads = new AtomicInteger();
+        ToolCallback read;
+
+        @CachedTool(ttl = "1m")
+        @Tool(description = "Reads")
+        int read() {
+            return reads.incrementAndGet();
+        }
+
+        @EvictsCachedTools("read")
+        @Tool(description = "Updates")
+        String update() {
+            read.call("{}");
+            read.call("{}");
+            return "updated";
+        }
+    }
+
+    @Test
+    void resultReadDuringAnEvictingCallIsNotCached() {
+        ReadDuringUpdateTools tools = new ReadDuringUpdateTools();
+        ToolCallbackProvider provider = cache.wrap(tools);
+        tools.read = tool(provider, "read");
+
+        tool(provider, "update").call("{}");
+        assertThat(tools.reads).hasValue(2);
+
+        tools.read.call("{}");
+        tools.read.call("{}");
+        assertThat(tools.reads).hasValue(3);
+    }
+}
@@ -0,0 +1,78 @@
+package com.knowprogram.openai.vectorstore;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.ai.vectorstore.filter.FilterExpressionTextParser;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FilterExpressionMatcherTest {
+
+    private final FilterExpressionTextParser parser = new FilterExpressionTextParser();
+
+    private boolean matches(String filter, Map<String, Object> metadata) {
+        return FilterExpressionMatcher.matches(parser.parse(filter), metadata);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"year > 2020", "year >= 2020", "year < 2020", "year <= 2020"})
+    void orderingOnAMissingKeyDoesNotMatch(String filter) {
+        assertThat(matches(filter, Map.of("source", "faq"))).isFalse();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"year > 2020", "year >= 2020", "year < 2020", "year <= 2020"})
+    void orderingBetweenANumberAndAStringDoesNotMatch(String filter) {
+        assertThat(matches(filter, Map.of("year", "2020"))).isFalse();
+    }
+
+    @Test
+    void missingKeyCombinesWithNotAndOr() {
+        assertThat(matches("NOT (year < 2020)", Map.of())).isTrue();
+        assertThat(matches("year < 2020 OR source == 'faq'", Map.of("source", "faq"))).isTrue();
+    }
+
+    @Test
+    void numbersAreComparedByValueAcrossBoxedTypes() {
+        Map<String, Object> metadata = Map.of("year", 2020L, "score", 0.5f);
+        assertThat(matches("year == 2020", metadata)).isTrue();
+        assertThat(matches("year >= 2020", metadata)).isTrue();
+        assertThat(matches("year < 2020", metadata)).isFalse();
+        assertThat(matches("score > 0.25", metadata)).isTrue();
+        assertThat(matches("score <= 0.25", metadata)).isFalse();
+    }
+
+    @Test
+    void stringsAreOrderedLexicographically() {
+        Map<String, Object> metadata = Map.of("file_name", "b.pdf");
+        assertThat(matches("file_name > 'a.pdf'", metadata)).isTrue();
+        assertThat(matches("file_name < 'a.pdf'", metadata)).isFalse();
+        assertThat(matches("file_name <= 'b.pdf'", metadata)).isTrue();
+    }
+
+    @Test
+    void equalityAndMembership() {
+        Map<String, Object> metadata = Map.of("source", "faq", "year", 2021);
+        assertThat(matches("source == 'faq' && year != 2020", metadata)).isTrue();
+        assertThat(matches("source in ['faq', 'manual']", metadata)).isTrue();
+        assertThat(matches("year in [2020, 2022]", metadata)).isFalse();
+        assertThat(matches("source nin ['manual']", metadata)).isTrue();
+    }
+
+    @Test
+    void missingKeyIsNotEqualAndNotInAnyList() {
+        Map<String, Object> metadata = Map.of("source", "faq");
+        assertThat(matches("chunk_id == 'a'", metadata)).isFalse();
+        assertThat(matches("chunk_id != 'a'", metadata)).isTrue();
+        assertThat(matches("chunk_id in ['a', 'b']", metadata)).isFalse();
+        assertThat(matches("chunk_id nin ['a', 'b']", metadata)).isTrue();
+    }
+
+    @Test
+    void quotedKeysAreUnquoted() {
+        assertThat(matches("'file-name' == 'a.pdf'", Map.of("file-name", "a.pdf"))).isTrue();
+    }
+}
@@ -0,0 +1,101 @@
+package com.knowprogram.openai.vectorstore;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.TokenCountBatchingStrategy;
+import org.springframework.ai.vectorstore.SearchRequest;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HnswVectorStoreTest {
+
+    @TempDir
+    Path directory;
+
+    private HnswVectorStore store(Quantization quantization) {
+        return new HnswVectorStore(new HashEmbeddingModel(32), new TokenCountBatchingStrategy(), new ObjectMapper(),
+                directory.resolve("index.hnsw"), 8, 50, 50, quantization, 4, 60_000);
+    }
+
+    private static List<Document> documents(int from, int to) {
+        return IntStream.range(from, to)
+                .mapToObj(i -> new Document("doc-" + i, "Policy paragraph number " + i, Map.of("n", i)))
+                .toList();
+    }
+
+    private static String top(HnswVectorStore store, String query) {
+        List<Document> hits = store.similaritySearch(SearchRequest.builder().query(query).topK(1).build());
+        return hits.isEmpty() ? null : hits.get(0).getId();
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = Quantization.class, names = {"NONE", "INT8"})
+    void compactedIndexFindsTheLiveDocumentsAndSurvivesARestart(Quantization quantization) throws Exception {
+        HnswVectorStore store = store(quantization);
+        store.add(documents(0, 40));
+        store.delete(IntStream.range(0, 20).mapToObj(i -> "doc-" + i).toList());
+        store.add(documents(30, 40));
+
+        for (int i = 20; i < 40; i++) {
+            assertThat(top(store, "Policy paragraph number " + i)).isEqualTo("doc-" + i);
+        }
+        assertThat(store.existingIds(List.of("doc-5", "doc-25"))).containsExactly("doc-25");
+        store.destroy();
+
+        HnswVectorStore reloaded = store(quantization);
+        for (int i = 20; i < 40; i++) {
+            assertThat(top(reloaded, "Policy paragraph number " + i)).isEqualTo("doc-" + i);
+        }
+        reloaded.destroy();
+        try (Stream<Path> files = Files.list(directory)) {
+            assertThat(files.filter(file -> file.toString().endsWith(".f32")).count())
+                    .isEqualTo(quantization == Quantization.NONE ? 0 : 1);
+        }
+    }
+
+    @Test
+    void snapshotIsSmallerAfterCompaction() throws Exception {
+        HnswVectorStore store = store(Quantization.NONE);
+        store.add(documents(0, 50));
+        store.snapshot();
+        long before = directory.resolve("index.hnsw").toFile().length();
+
+        List<String> deleted = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            deleted.add("doc-" + i);
+        }
+        store.delete(deleted);
+        store.snapshot();
+
+        assertThat(directory.resolve("index.hnsw").toFile().length()).isLessThan(before * 2 / 3);
+        store.destroy();
+    }
+
+    @Test
+    void snapshotOfAnotherVersionIsIgnored() throws Exception {
+        HnswVectorStore store = store(Quantization.NONE);
+        store.add(documents(0, 10));
+        store.destroy();
+        Path snapshot = directory.resolve("index.hnsw");
+        byte[] bytes = Files.readAllBytes(snapshot);
+        ByteBuffer.wrap(bytes).putInt(4, 0);
+        Files.write(snapshot, bytes);
+
+        HnswVectorStore reloaded = store(Quantization.NONE);
+        assertThat(reloaded.existingIds(List.of("doc-1"))).isEmpty();
+        reloaded.destroy();
+    }
+}
@@ -0,0 +1,214 @@
+package com.knowprogram.openai.vectorstore;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.embedding.TokenCountBatchingStrategy;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.util.FileSystemUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Recall and latency of the {@link HnswVectorStore} quantization modes for the retrieval settings of
+ * {@code ChatMemoryChatClientConfig} ({@code topK(3)}, {@code similarityThreshold(0.5)}), on clustered
+ * synthetic unit vectors of the ada-002 dimensionality.
+ * <p>
+ * The vectors are served by an {@link EmbeddingModel} that looks them up by text, and each mode is
+ * measured through {@link HnswVectorStore#similaritySearch} of a store built like
+ * {@code VectorStoreConfig} builds it, so the numbers include the store's own re-ranking.
+ * <p>
+ * Not a test; run {@code main} with optional {@code [documents] [queries] [rerankFactor]} arguments, the
+ * rerank factor defaulting to {@code app.vectorstore.hnsw.rerank-factor}.
+ */
+public class QuantizationBenchmark {
+
+    private static final int DIMENSIONS = 1536;
+    private static final int TOP_K = 3;
+    private static final double THRESHOLD = 0.5;
+    private static final int M = 16;
+    private static final int EF_CONSTRUCTION = 200;
+    private static final int EF_SEARCH = 64;
+
+    public static void main(String[] args) throws Exception {
+        int documents = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+        int rerankFactor = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        Random random = new Random(7);
+        float[][] centroids = new float[Math.max(1, documents / 100)][];
+        for (int i = 0; i < centroids.length; i++) {
+            centroids[i] = gaussian(random, 1.0f);
+        }
+        float[][] corpus = new float[documents][];
+        for (int i = 0; i < documents; i++) {
+            corpus[i] = around(centroids[random.nextInt(centroids.length)], random);
+        }
+        float[][] workload = new float[queries][];
+        for (int i = 0; i < queries; i++) {
+            workload[i] = around(centroids[random.nextInt(centroids.length)], random);
+        }
+        List<Set<String>> truth = new ArrayList<>();
+        for (float[] query : workload) {
+            truth.add(exactTopK(corpus, query));
+        }
+        Map<String, float[]> vectors = new HashMap<>();
+        List<Document> documentList = new ArrayList<>();
+        for (int i = 0; i < documents; i++) {
+            vectors.put(documentText(i), corpus[i]);
+            documentList.add(new Document(documentId(i), documentText(i), Map.of()));
+        }
+        for (int i = 0; i < queries; i++) {
+            vectors.put(queryText(i), workload[i]);
+        }
+        EmbeddingModel embeddingModel = new VectorEmbeddingModel(vectors);
+
+        System.out.printf("%d documents, %d queries, topK=%d, threshold=%.1f, rerank factor %d%n", documents, queries,
+                TOP_K, THRESHOLD, rerankFactor);
+        System.out.printf("%-8s %12s %10s %10s %10s %10s%n", "mode", "bytes/vec", "build s", "recall", "p50 us", "p99 us");
+        for (Quantization quantization : Quantization.values()) {
+            run(quantization, rerankFactor, embeddingModel, documentList, truth);
+        }
+    }
+
+    private static void run(Quantization quantization, int rerankFactor, EmbeddingModel embeddingModel,
+                            List<Document> documents, List<Set<String>> truth) throws Exception {
+        Path directory = Files.createTempDirectory("hnsw-benchmark");
+        HnswVectorStore store = new HnswVectorStore(embeddingModel, new TokenCountBatchingStrategy(),
+                new ObjectMapper(), directory.resolve("index.hnsw"), M, EF_CONSTRUCTION, EF_SEARCH, quantization,
+                rerankFactor, Long.MAX_VALUE / 2);
+        try {
+            long buildStart = System.nanoTime();
+            for (int from = 0; from < documents.size(); from += 1000) {
+                store.add(documents.subList(from, Math.min(from + 1000, documents.size())));
+            }
+            double buildSeconds = (System.nanoTime() - buildStart) / 1e9;
+
+            long[] latencies = new long[truth.size()];
+            int found = 0;
+            int expected = 0;
+            for (int round = 0; round < 2; round++) {
+                found = 0;
+                expected = 0;
+                for (int q = 0; q < truth.size(); q++) {
+                    SearchRequest request = SearchRequest.builder().query(queryText(q)).topK(TOP_K)
+                            .similarityThreshold(THRESHOLD).build();
+                    long start = System.nanoTime();
+                    List<Document> hits = store.similaritySearch(request);
+                    latencies[q] = System.nanoTime() - start;
+                    for (Document hit : hits) {
+                        if (truth.get(q).contains(hit.getId())) {
+                            found++;
+                        }
+                    }
+                    expected += truth.get(q).size();
+                }
+            }
+            Arrays.sort(latencies);
+            System.out.printf("%-8s %12d %10.1f %10.3f %10d %10d%n", quantization,
+                    VectorStorage.create(quantization, DIMENSIONS).bytesPerVector(), buildSeconds,
+                    expected == 0 ? 1.0 : (double) found / expected,
+                    latencies[latencies.length / 2] / 1000, latencies[latencies.length * 99 / 100] / 1000);
+        } finally {
+            store.destroy();
+            FileSystemUtils.deleteRecursively(directory);
+        }
+    }
+
+    private static String documentId(int i) {
+        return "doc-" + i;
+    }
+
+    private static String documentText(int i) {
+        return "document " + i;
+    }
+
+    private static String queryText(int i) {
+        return "query " + i;
+    }
+
+    private static Set<String> exactTopK(float[][] corpus, float[] query) {
+        Integer[] order = new Integer[corpus.length];
+        float[] scores = new float[corpus.length];
+        for (int i = 0; i < corpus.length; i++) {
+            order[i] = i;
+            scores[i] = dot(corpus[i], query);
+        }
+        Arrays.sort(order, (a, b) -> Float.compare(scores[b], scores[a]));
+        Set<String> topK = new HashSet<>();
+        for (int i = 0; i < TOP_K && scores[order[i]] >= THRESHOLD; i++) {
+            topK.add(documentId(order[i]));
+        }
+        return topK;
+    }
+
+    private static float[] around(float[] centroid, Random random) {
+        float[] noise = gaussian(random, 0.9f);
+        float[] vector = new float[DIMENSIONS];
+        for (int i = 0; i < DIMENSIONS; i++) {
+            vector[i] = centroid[i] + noise[i];
+        }
+        return HnswVectorStore.normalize(vector);
+    }
+
+    private static float[] gaussian(Random random, float scale) {
+        float[] vector = new float[DIMENSIONS];
+        for (int i = 0; i < DIMENSIONS; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        vector = HnswVectorStore.normalize(vector);
+        for (int i = 0; i < DIMENSIONS; i++) {
+            vector[i] *= scale;
+        }
+        return vector;
+    }
+
+    private static float dot(float[] a, float[] b) {
+        float sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Answers every text with the vector generated for it, the same way for documents and queries.
+     */
+    private static final class VectorEmbeddingModel implements EmbeddingModel {
+        private final Map<String, float[]> vectors;
+
+        VectorEmbeddingModel(Map<String, float[]> vectors) {
+            this.vectors = vectors;
+        }
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            List<Embedding> embeddings = new ArrayList<>();
+            for (int i = 0; i < request.getInstructions().size(); i++) {
+                embeddings.add(new Embedding(vectors.get(request.getInstructions().get(i)), i));
+            }
+            return new EmbeddingResponse(embeddings);
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            return vectors.get(document.getText());
+        }
+
+        @Override
+        public int dimensions() {
+            return DIMENSIONS;
+        }
+    }
+}